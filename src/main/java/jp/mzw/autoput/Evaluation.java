@@ -71,7 +71,7 @@ public class Evaluation {
             LOGGER.debug("getHeaders()");
             List<CSVRecord> headers = getHeaders();
             LOGGER.debug("getTestSuites()");
-            List<TestSuite> testSuites = project.getTestSuites();
+            List<TestSuite> testSuites = project.getParsedTestSuites();
             // テストメソッドのMapを作る．
             LOGGER.debug("テストメソッドのMapを作る．");
             Map<MethodDeclaration, String> methodIds = new HashMap<>();
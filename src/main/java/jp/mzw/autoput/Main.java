@@ -20,6 +20,8 @@ public class Main {
 
     public final static String PUT = "AutoPUT";
     public final static String CUT = "Original";
+    /** Suffix of the resource having data points read by PUT */
+    public final static String DATA_POINTS = ".datapoints";
 
     public static void main(String[] args) throws IOException, BadLocationException {
         String projectId = args[0];
@@ -135,9 +135,12 @@ public class ASTUtils {
         return visitor.getStatments();
     }
     public static List<ASTNode> getDifferentNodes(ASTNode src, ASTNode dst) {
-        List<ASTNode> ret = new ArrayList<>();
         List<ASTNode> nodes1 = ASTUtils.flattenMinusNumberLiteral(ASTUtils.getAllNodes(src));
         List<ASTNode> nodes2 = ASTUtils.flattenMinusNumberLiteral(ASTUtils.getAllNodes(dst));
+        return getDifferentNodes(nodes1, nodes2);
+    }
+    public static List<ASTNode> getDifferentNodes(List<ASTNode> nodes1, List<ASTNode> nodes2) {
+        List<ASTNode> ret = new ArrayList<>();
         if (nodes1.size() != nodes2.size()) {
             return ret;
         }
@@ -196,247 +199,6 @@ public class ASTUtils {
         return visitor.getAssertions();
     }
 
-    public static boolean allStringType(List<ASTNode> nodes) {
-        if (nodes == null || nodes.isEmpty()) {
-            return false;
-        }
-        for (ASTNode node : nodes) {
-            if (!(node instanceof StringLiteral)) {
-                if (!(node instanceof Expression)) {
-                    return false;
-                }
-                Expression expression = (Expression) node;
-                if (expression.resolveTypeBinding() == null) {
-                    return false;
-                }
-                if (expression.resolveTypeBinding().getName().equals("String")) {
-                    continue;
-                }
-                return false;
-            }
-        }
-        return true;
-    }
-
-
-    public static boolean allByteType(List<ASTNode> nodes) {
-        if (nodes == null || nodes.isEmpty()) {
-            return false;
-        }
-        for (ASTNode node : nodes) {
-            if (!(node instanceof NumberLiteral)) {
-                if (!(node instanceof Expression)) {
-                    return false;
-                }
-                Expression expression = (Expression) node;
-                if (expression.resolveTypeBinding() == null) {
-                    return false;
-                }
-                String type = expression.resolveTypeBinding().getName();
-                if (type.equals("byte")) {
-                    continue;
-                }
-                return false;
-            } else {
-                String type = ((NumberLiteral) node).resolveTypeBinding().getName();
-                if (type.equals("byte")) {
-                    continue;
-                }
-                return false;
-            }
-        }
-        return true;
-    }
-    public static boolean allShortType(List<ASTNode> nodes) {
-        if (nodes == null || nodes.isEmpty()) {
-            return false;
-        }
-        for (ASTNode node : nodes) {
-            if (!(node instanceof NumberLiteral)) {
-                if (!(node instanceof Expression)) {
-                    return false;
-                }
-                Expression expression = (Expression) node;
-                if (expression.resolveTypeBinding() == null) {
-                    return false;
-                }
-                String type = expression.resolveTypeBinding().getName();
-                if (type.equals("byte") || type.equals("short")) {
-                    continue;
-                }
-                return false;
-            } else {
-                String type = ((NumberLiteral) node).resolveTypeBinding().getName();
-                if (type.equals("byte") || type.equals("short")) {
-                    continue;
-                }
-                return false;
-            }
-        }
-        return true;
-    }
-    public static boolean allIntType(List<ASTNode> nodes) {
-        if (nodes == null || nodes.isEmpty()) {
-            return false;
-        }
-        for (ASTNode node : nodes) {
-            if (!(node instanceof NumberLiteral)) {
-                if (!(node instanceof Expression)) {
-                    return false;
-                }
-                Expression expression = (Expression) node;
-                if (expression.resolveTypeBinding() == null) {
-                    return false;
-                }
-                String type = expression.resolveTypeBinding().getName();
-                if (type.equals("byte") || type.equals("short")|| type.equals("int")) {
-                    continue;
-                }
-                return false;
-            } else {
-                String type = ((NumberLiteral) node).resolveTypeBinding().getName();
-                if (type.equals("byte") || type.equals("short") || type.equals("int")) {
-                    continue;
-                }
-                return false;
-            }
-        }
-        return true;
-    }
-    public static boolean allLongType(List<ASTNode> nodes) {
-        if (nodes == null || nodes.isEmpty()) {
-            return false;
-        }
-        for (ASTNode node : nodes) {
-            if (!(node instanceof NumberLiteral)) {
-                if (!(node instanceof Expression)) {
-                    return false;
-                }
-                Expression expression = (Expression) node;
-                if (expression.resolveTypeBinding() == null) {
-                    return false;
-                }
-                String type = expression.resolveTypeBinding().getName();
-                if (type.equals("byte") || type.equals("short") || type.equals("int")|| type.equals("long")) {
-                    continue;
-                }
-                return false;
-            } else {
-                String type = ((NumberLiteral) node).resolveTypeBinding().getName();
-                if (type.equals("byte") || type.equals("short") || type.equals("int")|| type.equals("long")) {
-                    continue;
-                }
-                return false;
-            }
-        }
-        return true;
-    }
-    public static boolean allFloatType(List<ASTNode> nodes) {
-        if (nodes == null || nodes.isEmpty()) {
-            return false;
-        }
-        for (ASTNode node : nodes) {
-            if (!(node instanceof NumberLiteral)) {
-                if (!(node instanceof Expression)) {
-                    return false;
-                }
-                Expression expression = (Expression) node;
-                if (expression.resolveTypeBinding() == null) {
-                    return false;
-                }
-                String type = expression.resolveTypeBinding().getName();
-                if (type.equals("byte") || type.equals("short") || type.equals("int")
-                        || type.equals("long") || type.equals("float")) {
-                    continue;
-                }
-                return false;
-            } else {
-                String type = ((NumberLiteral) node).resolveTypeBinding().getName();
-                if (type.equals("byte") || type.equals("short") || type.equals("int")
-                        || type.equals("long")|| type.equals("float")) {
-                    continue;
-                }
-                return false;
-            }
-        }
-        return true;
-    }
-    public static boolean allDoubleType(List<ASTNode> nodes) {
-        if (nodes == null || nodes.isEmpty()) {
-            return false;
-        }
-        for (ASTNode node : nodes) {
-            if (!(node instanceof NumberLiteral)) {
-                if (!(node instanceof Expression)) {
-                    return false;
-                }
-                Expression expression = (Expression) node;
-                if (expression.resolveTypeBinding() == null) {
-                    return false;
-                }
-                String type = expression.resolveTypeBinding().getName();
-                if (type.equals("byte") || type.equals("short") || type.equals("int")
-                        || type.equals("long")|| type.equals("float") || type.equals("double")) {
-                    continue;
-                }
-                return false;
-            } else {
-                String type = ((NumberLiteral) node).resolveTypeBinding().getName();
-                if (type.equals("byte") || type.equals("short") || type.equals("int")
-                        || type.equals("long")|| type.equals("float") || type.equals("double")) {
-                    continue;
-                }
-                return false;
-            }
-        }
-        return true;
-    }
-
-
-    public static boolean allCharacterType(List<ASTNode> nodes) {
-        if (nodes == null || nodes.isEmpty()) {
-            return false;
-        }
-        for (ASTNode node : nodes) {
-            if (!(node instanceof CharacterLiteral)) {
-                if (!(node instanceof Expression)) {
-                    return false;
-                }
-                Expression expression = (Expression) node;
-                if (expression.resolveTypeBinding() == null) {
-                    return false;
-                }
-                if (expression.resolveTypeBinding().getName().equals("char")) {
-                    continue;
-                }
-                return false;
-            }
-        }
-        return true;
-    }
-
-    public static boolean allBooleanType(List<ASTNode> nodes) {
-        if (nodes == null || nodes.isEmpty()) {
-            return false;
-        }
-        for (ASTNode node : nodes) {
-            if (!(node instanceof BooleanLiteral)) {
-                if (!(node instanceof Expression)) {
-                    return false;
-                }
-                Expression expression = (Expression) node;
-                if (expression.resolveTypeBinding() == null) {
-                    return false;
-                }
-                if (expression.resolveTypeBinding().getName().equals("boolean")) {
-                    continue;
-                }
-                return false;
-            }
-        }
-        return true;
-    }
-
     public static boolean isAssertionMethod(MethodInvocation method) {
         if (method == null) {
             return false;
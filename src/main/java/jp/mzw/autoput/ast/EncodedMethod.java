@@ -0,0 +1,214 @@
+package jp.mzw.autoput.ast;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ClassInstanceCreation;
+import org.eclipse.jdt.core.dom.InfixExpression;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.PostfixExpression;
+import org.eclipse.jdt.core.dom.PrefixExpression;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.SimpleType;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Flattened node sequence of a method encoded into primitive arrays,
+ * so that similarity can be checked without touching the AST.
+ */
+public class EncodedMethod {
+    /** SimpleName is a declaration */
+    public static final int DECLARATION = 1;
+    /** SimpleName can be extracted as a parameter (see ASTUtils.canExtract) */
+    public static final int EXTRACTABLE = 1 << 1;
+    /** SimpleName refers to a constant variable (see ASTUtils.isConst) */
+    public static final int CONST = 1 << 2;
+
+    /** Ids of operators, identifiers and type names. 0 is reserved for "no label" */
+    private static final Map<String, Integer> LABEL_IDS = new ConcurrentHashMap<>();
+    private static final Map<Integer, String> LABELS = new ConcurrentHashMap<>();
+    private static final AtomicInteger LAST_LABEL_ID = new AtomicInteger();
+
+    /** Node type of each node (ASTNode.getNodeType()) */
+    protected final int[] kinds;
+    /** Operator of infix, prefix and postfix expressions */
+    protected final int[] operators;
+    /** Invoked method name, type name or identifier */
+    protected final int[] labels;
+    /** DECLARATION, EXTRACTABLE and CONST flags of simple names */
+    protected final int[] flags;
+    /** Type name of extractable simple names */
+    protected final int[] types;
+
+    protected final int fingerprint;
+    protected final int naiveFingerprint;
+
+    protected EncodedMethod(int[] kinds, int[] operators, int[] labels, int[] flags, int[] types) {
+        this.kinds = kinds;
+        this.operators = operators;
+        this.labels = labels;
+        this.flags = flags;
+        this.types = types;
+        int naive = 31 * Arrays.hashCode(kinds) + Arrays.hashCode(operators);
+        int full = naive;
+        for (int i = 0; i < kinds.length; i++) {
+            if (kinds[i] != ASTNode.SIMPLE_NAME) {
+                full = 31 * full + labels[i];
+            }
+        }
+        this.naiveFingerprint = naive;
+        this.fingerprint = full;
+    }
+
+    public static EncodedMethod encode(List<ASTNode> nodes) {
+        int size = nodes.size();
+        int[] kinds = new int[size];
+        int[] operators = new int[size];
+        int[] labels = new int[size];
+        int[] flags = new int[size];
+        int[] types = new int[size];
+        for (int i = 0; i < size; i++) {
+            ASTNode node = nodes.get(i);
+            kinds[i] = node.getNodeType();
+            if (node instanceof MethodInvocation) {
+                labels[i] = getLabelId(((MethodInvocation) node).getName().getIdentifier());
+            } else if (node instanceof InfixExpression) {
+                operators[i] = getLabelId(((InfixExpression) node).getOperator().toString());
+            } else if (node instanceof PrefixExpression) {
+                operators[i] = getLabelId(((PrefixExpression) node).getOperator().toString());
+            } else if (node instanceof PostfixExpression) {
+                operators[i] = getLabelId(((PostfixExpression) node).getOperator().toString());
+            } else if (node instanceof SimpleType) {
+                labels[i] = getLabelId(((SimpleType) node).getName().toString());
+            } else if (node instanceof ClassInstanceCreation) {
+                labels[i] = getLabelId(((ClassInstanceCreation) node).getType().toString());
+            } else if (node instanceof SimpleName) {
+                SimpleName simpleName = (SimpleName) node;
+                labels[i] = getLabelId(simpleName.getIdentifier());
+                if (simpleName.isDeclaration()) {
+                    flags[i] |= DECLARATION;
+                }
+                if (ASTUtils.canExtract(simpleName)) {
+                    flags[i] |= EXTRACTABLE;
+                    types[i] = getLabelId(simpleName.resolveTypeBinding().getName());
+                }
+                if (ASTUtils.isConst(simpleName)) {
+                    flags[i] |= CONST;
+                }
+            }
+        }
+        return new EncodedMethod(kinds, operators, labels, flags, types);
+    }
+
+    public int size() {
+        return this.kinds.length;
+    }
+    public int[] getKinds() {
+        return this.kinds;
+    }
+    public int[] getOperators() {
+        return this.operators;
+    }
+    public int[] getLabels() {
+        return this.labels;
+    }
+    public int[] getFlags() {
+        return this.flags;
+    }
+    public int[] getTypes() {
+        return this.types;
+    }
+
+    /**
+     * Hash that is equal for any two methods regarded as similar by Detector.similarAST
+     */
+    public int getFingerprint() {
+        return this.fingerprint;
+    }
+
+    /**
+     * Hash that is equal for any two methods regarded as similar by NaiveDetector.similarAST
+     */
+    public int getNaiveFingerprint() {
+        return this.naiveFingerprint;
+    }
+
+    /**
+     * Whether two simple names at the same position can be regarded as the same parameter.
+     * Mirrors the masking of simple names in Detector.similarAST.
+     */
+    public static boolean maskable(EncodedMethod src, EncodedMethod dst, int i) {
+        int flags1 = src.flags[i];
+        int flags2 = dst.flags[i];
+        if ((flags1 & DECLARATION) != 0 && (flags2 & DECLARATION) != 0) {
+            return true;
+        }
+        return (flags1 & EXTRACTABLE) != 0 && (flags2 & EXTRACTABLE) != 0
+                && src.types[i] == dst.types[i]
+                && (flags1 & CONST) != 0;
+    }
+
+    /**
+     * Write this encoding with its labels as strings, since label ids are only valid in the current process
+     */
+    public void write(DataOutputStream out) throws IOException {
+        Map<Integer, Integer> localIds = new LinkedHashMap<>();
+        localIds.put(0, 0);
+        for (int i = 0; i < kinds.length; i++) {
+            localIds.putIfAbsent(operators[i], localIds.size());
+            localIds.putIfAbsent(labels[i], localIds.size());
+            localIds.putIfAbsent(types[i], localIds.size());
+        }
+        out.writeInt(localIds.size() - 1);
+        for (int id : localIds.keySet()) {
+            if (id != 0) {
+                out.writeUTF(LABELS.get(id));
+            }
+        }
+        out.writeInt(kinds.length);
+        for (int i = 0; i < kinds.length; i++) {
+            out.writeInt(kinds[i]);
+            out.writeInt(localIds.get(operators[i]));
+            out.writeInt(localIds.get(labels[i]));
+            out.writeInt(flags[i]);
+            out.writeInt(localIds.get(types[i]));
+        }
+    }
+
+    public static EncodedMethod read(DataInputStream in) throws IOException {
+        int numOfLabels = in.readInt();
+        int[] globalIds = new int[numOfLabels + 1];
+        for (int i = 1; i <= numOfLabels; i++) {
+            globalIds[i] = getLabelId(in.readUTF());
+        }
+        int size = in.readInt();
+        int[] kinds = new int[size];
+        int[] operators = new int[size];
+        int[] labels = new int[size];
+        int[] flags = new int[size];
+        int[] types = new int[size];
+        for (int i = 0; i < size; i++) {
+            kinds[i] = in.readInt();
+            operators[i] = globalIds[in.readInt()];
+            labels[i] = globalIds[in.readInt()];
+            flags[i] = in.readInt();
+            types[i] = globalIds[in.readInt()];
+        }
+        return new EncodedMethod(kinds, operators, labels, flags, types);
+    }
+
+    protected static int getLabelId(String label) {
+        return LABEL_IDS.computeIfAbsent(label, key -> {
+            int id = LAST_LABEL_ID.incrementAndGet();
+            LABELS.put(id, key);
+            return id;
+        });
+    }
+}
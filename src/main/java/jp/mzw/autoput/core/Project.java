@@ -2,6 +2,7 @@ package jp.mzw.autoput.core;
 
 import jp.mzw.autoput.Main;
 
+import jp.mzw.autoput.maven.MavenUtils;
 import jp.mzw.autoput.util.Utils;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.core.dom.AST;
@@ -11,14 +12,34 @@ import org.eclipse.jdt.core.dom.FileASTRequestor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Created by TK on 7/20/17.
@@ -36,9 +57,49 @@ public class Project {
     protected String mavenHome = "/usr/local/apache-maven-3.3.9";
     /** Path to subject project */
     protected String pathToProject;
+    /** Number of threads detecting similar test methods (default: 1, i.e., serial) */
+    protected int detectParallelism = 1;
+    /** Number of threads parsing sources (default: 1, i.e., all sources in a single ASTParser) */
+    protected int parseWorkers = 1;
+    /** Number of sources parsed by an ASTParser in parallel parse mode (default: 0, i.e., evenly divided among workers) */
+    protected int parseBatchSize = 0;
+    /** Number of threads generating PUTs, each of which parses its own test files (default: 1, i.e., serial) */
+    protected int generateParallelism = 1;
+    /** Generate Fixture having a precisely typed field for each input and expected, instead of arrays (default: false) */
+    protected boolean typedFixture = false;
+    /** Write constant data points to a resource next to PUT, which implies the typed Fixture (default: false) */
+    protected boolean externalDataPoints = false;
+    /** Number of workers checking requirements, each in its own workspace cloned from the subject (default: 1, i.e., in the subject) */
+    protected int requirementWorkers = 1;
+    /** Compile all PUTs and original CUTs in a single test-compile before checking requirements (default: false) */
+    protected boolean batchCompile = false;
+    /** Compile PUTs and original CUTs in process against compiled classes of the subject instead of Maven (default: false) */
+    protected boolean inProcessCompile = false;
+    /** Measure coverage on long-lived runner JVMs with the JaCoCo agent instead of Maven (default: false) */
+    protected boolean warmRunner = false;
+    /** Runtime jar of the JaCoCo agent attached to the runners (default: null, i.e., measure coverage by Maven) */
+    protected String jacocoAgent = null;
+    /** Restore test suites from a snapshot saved in the output directory if no source has changed (default: false) */
+    protected boolean useSnapshot = false;
+    /** Re-parse only test files changed since the previous run (default: false) */
+    protected boolean incremental = false;
+    /** Git revision range whose changed files are re-parsed in incremental mode in addition to files whose content hash differs (default: null) */
+    protected String incrementalGitRange = null;
+    /**
+     * Environment resolving bindings (default: sources, i.e., parse all sources).
+     * If skeleton, only test sources are parsed and production sources are read from the source path on demand,
+     * where JDT ignores method bodies and retains no compilation unit.
+     * If classpath, only test sources are parsed against compiled classes and dependency jars of the subject.
+     */
+    protected String parseEnvironment = "sources";
+    /** Class path of the subject in classpath environment, or null if unavailable */
+    protected String[] classpath;
 
-    protected Map<String, CompilationUnit> compilationUnits;
     protected List<TestSuite> testSuites;
+    /** Whether sources are parsed, although some test suites may be restored from the snapshot in incremental mode */
+    protected boolean parsed;
+    /** Content hashes of sources, computed when using snapshot or incremental mode */
+    protected Map<String, String> sourceHashes;
 
     public Project(String projectId) {
         this.projectId = projectId;
@@ -55,7 +116,69 @@ public class Project {
     public File getMavenHome() {
         return new File(this.mavenHome);
     }
+    public int getDetectParallelism() {
+        return this.detectParallelism;
+    }
+    public int getGenerateParallelism() {
+        return this.generateParallelism;
+    }
+    public int getRequirementWorkers() {
+        return this.requirementWorkers;
+    }
+    public boolean isBatchCompile() {
+        return this.batchCompile;
+    }
+    public boolean isInProcessCompile() {
+        return this.inProcessCompile;
+    }
+    public boolean isWarmRunner() {
+        return this.warmRunner;
+    }
+    public File getJacocoAgent() {
+        return this.jacocoAgent != null ? new File(this.jacocoAgent) : null;
+    }
+    public boolean isTypedFixture() {
+        return this.typedFixture;
+    }
+    public boolean isExternalDataPoints() {
+        return this.externalDataPoints;
+    }
+    public boolean isIncremental() {
+        return this.incremental;
+    }
+    /**
+     * Get content hash of the given source, or null if hashes are not computed
+     */
+    public String getSourceHash(File source) {
+        return this.sourceHashes != null ? this.sourceHashes.get(source.getPath()) : null;
+    }
+    /**
+     * Get test suites, which are parsed or restored on the first call
+     */
     public List<TestSuite> getTestSuites() {
+        if (this.testSuites == null) {
+            load(null);
+        }
+        return this.testSuites;
+    }
+    /**
+     * Pass each test suite to the given consumer.
+     * If sources are not parsed yet, test suites are passed as soon as they are parsed, possibly from parser threads.
+     */
+    public void forEachTestSuite(Consumer<TestSuite> consumer) {
+        if (this.testSuites != null) {
+            this.testSuites.forEach(consumer);
+        } else {
+            load(consumer);
+        }
+    }
+    /**
+     * Get test suites having ASTs, parsing sources if test suites are restored from a snapshot
+     */
+    public List<TestSuite> getParsedTestSuites() {
+        if (!this.parsed || this.testSuites.stream().anyMatch(TestSuite::isRestored)) {
+            prepare();
+        }
         return this.testSuites;
     }
     public Project setConfig(String filename) throws IOException {
@@ -69,25 +192,283 @@ public class Project {
         this.pathToOutputDir = config.getProperty("path_to_output_dir") != null ? config.getProperty("path_to_output_dir") : "output";
         this.pathToSubjectsDir = config.getProperty("path_to_subjects_dir") != null ? config.getProperty("path_to_subjects_dir") : "subjects";
         this.mavenHome = config.getProperty("maven_home") != null ? config.getProperty("maven_home") : "/usr/local/apache-maven-3.3.9";
-        prepare();
+        this.detectParallelism = config.getProperty("detect_parallelism") != null ? Integer.parseInt(config.getProperty("detect_parallelism")) : 1;
+        this.parseWorkers = config.getProperty("parse_workers") != null ? Integer.parseInt(config.getProperty("parse_workers")) : 1;
+        this.parseBatchSize = config.getProperty("parse_batch_size") != null ? Integer.parseInt(config.getProperty("parse_batch_size")) : 0;
+        this.generateParallelism = config.getProperty("generate_parallelism") != null ? Integer.parseInt(config.getProperty("generate_parallelism")) : 1;
+        this.requirementWorkers = config.getProperty("requirement_workers") != null ? Integer.parseInt(config.getProperty("requirement_workers")) : 1;
+        this.batchCompile = config.getProperty("batch_compile") != null ? Boolean.parseBoolean(config.getProperty("batch_compile")) : false;
+        this.inProcessCompile = config.getProperty("in_process_compile") != null ? Boolean.parseBoolean(config.getProperty("in_process_compile")) : false;
+        this.warmRunner = config.getProperty("warm_runner") != null ? Boolean.parseBoolean(config.getProperty("warm_runner")) : false;
+        this.jacocoAgent = config.getProperty("jacoco_agent");
+        this.typedFixture = config.getProperty("typed_fixture") != null ? Boolean.parseBoolean(config.getProperty("typed_fixture")) : false;
+        this.externalDataPoints = config.getProperty("external_data_points") != null ? Boolean.parseBoolean(config.getProperty("external_data_points")) : false;
+        this.useSnapshot = config.getProperty("use_snapshot") != null ? Boolean.parseBoolean(config.getProperty("use_snapshot")) : false;
+        this.incremental = config.getProperty("incremental") != null ? Boolean.parseBoolean(config.getProperty("incremental")) : false;
+        this.incrementalGitRange = config.getProperty("incremental_git_range");
+        this.parseEnvironment = config.getProperty("parse_environment") != null ? config.getProperty("parse_environment") : "sources";
+        // test suites are loaded on demand
+        this.testSuites = null;
         // return
         return this;
     }
 
-    private static Map<String, CompilationUnit> getFileUnitMap(File subjectDir) {
+    /**
+     * Parse sources and pass compilation units of test files to the given acceptor as soon as they are parsed.
+     * Compilation units of production sources are not retained.
+     */
+    private void parse(File subjectDir, BiConsumer<String, CompilationUnit> acceptor) {
+        String[] classpath = getClasspath(subjectDir);
+        boolean testOnly = classpath != null || "skeleton".equals(parseEnvironment);
+        String[] sources = testOnly ? getTestFiles(subjectDir) : getSources(subjectDir);
+        Set<String> testFiles = new HashSet<>(Arrays.asList(getTestFiles(subjectDir)));
+        BiConsumer<String, CompilationUnit> testAcceptor = (sourceFilePath, ast) -> {
+            if (testFiles.contains(sourceFilePath)) {
+                acceptor.accept(sourceFilePath, ast);
+            }
+        };
+        if (1 < parseWorkers) {
+            // Production types are resolved from the source path of each batch, so only test files are parsed in every mode
+            parseInParallel(getTestFiles(subjectDir), classpath, getBindingSourceRoots(subjectDir), testAcceptor);
+            return;
+        }
+        if (testOnly) {
+            parse(sources, classpath, getBindingSourceRoots(subjectDir), testAcceptor);
+            return;
+        }
         ASTParser parser = ASTParser.newParser(AST.JLS8);
         parser.setResolveBindings(true);
         parser.setBindingsRecovery(true);
         parser.setEnvironment(null, null, null, true);
-        final Map<String, CompilationUnit> units = new HashMap<>();
         FileASTRequestor requestor = new FileASTRequestor() {
             @Override
             public void acceptAST(String sourceFilePath, CompilationUnit ast) {
-                units.put(sourceFilePath, ast);
+                testAcceptor.accept(sourceFilePath, ast);
             }
         };
-        parser.createASTs(getSources(subjectDir), null, new String[] {}, requestor, new NullProgressMonitor());
-        return units;
+        parser.createASTs(sources, null, new String[] {}, requestor, new NullProgressMonitor());
+    }
+
+    /**
+     * Parse a single test file with its own ASTParser, so that the returned test suite shares no AST with others.
+     * This can be called from multiple threads.
+     *
+     * @return parsed test suite, or null if the file cannot be parsed
+     */
+    public TestSuite parseTestSuite(File testFile) {
+        File subjectDir = getSubjectDir();
+        // Parse the same content that is rewritten later
+        String sources = TestSuite.readSources(testFile);
+        if (sources == null) {
+            return null;
+        }
+        ASTParser parser = ASTParser.newParser(AST.JLS8);
+        parser.setResolveBindings(true);
+        parser.setBindingsRecovery(true);
+        parser.setEnvironment(getClasspath(subjectDir), getBindingSourceRoots(subjectDir), null, true);
+        parser.setUnitName(testFile.getPath());
+        parser.setSource(sources.toCharArray());
+        CompilationUnit cu = (CompilationUnit) parser.createAST(new NullProgressMonitor());
+        return new TestSuite(testFile, cu, sources);
+    }
+
+    /**
+     * Parse sources in batches on a worker pool.
+     * Every batch has its own ASTParser whose source path covers all source directories,
+     * so that types declared in other batches are resolved as well.
+     * The acceptor is called from the worker threads.
+     */
+    private void parseInParallel(String[] sources, String[] classpath, String[] sourceRoots, BiConsumer<String, CompilationUnit> acceptor) {
+        int batchSize = 0 < parseBatchSize ? parseBatchSize : Math.max(1, (sources.length + parseWorkers - 1) / parseWorkers);
+        ExecutorService executor = Executors.newFixedThreadPool(parseWorkers);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int from = 0; from < sources.length; from += batchSize) {
+            final String[] batch = Arrays.copyOfRange(sources, from, Math.min(from + batchSize, sources.length));
+            futures.add(executor.submit(() -> parse(batch, classpath, sourceRoots, acceptor)));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while parsing sources in parallel", e);
+        } catch (ExecutionException e) {
+            // 一部のみ解析された結果をsnapshotに保存しないよう, 直列の場合と同様に例外を伝播させる
+            LOGGER.error("Fail to parse sources in parallel: {}", e.getCause().getMessage());
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Parse the given sources with an ASTParser whose environment covers the given class path and source directories
+     */
+    private static void parse(String[] sources, String[] classpath, String[] sourceRoots, BiConsumer<String, CompilationUnit> acceptor) {
+        ASTParser parser = ASTParser.newParser(AST.JLS8);
+        parser.setResolveBindings(true);
+        parser.setBindingsRecovery(true);
+        parser.setEnvironment(classpath, sourceRoots, null, true);
+        FileASTRequestor requestor = new FileASTRequestor() {
+            @Override
+            public void acceptAST(String sourceFilePath, CompilationUnit ast) {
+                acceptor.accept(sourceFilePath, ast);
+            }
+        };
+        parser.createASTs(sources, null, new String[] {}, requestor, new NullProgressMonitor());
+    }
+
+    /**
+     * Get the class path consisting of compiled classes and dependency jars of the subject in classpath environment.
+     * The dependency class path is resolved by Maven once and cached in the output directory.
+     *
+     * @return class path, or null if not in classpath environment or the subject is not compiled
+     */
+    private synchronized String[] getClasspath(File subjectDir) {
+        if (!"classpath".equals(parseEnvironment)) {
+            return null;
+        }
+        if (this.classpath != null) {
+            return this.classpath;
+        }
+        List<File> dirs = new ArrayList<>();
+        dirs.add(new File(subjectDir, "target/classes"));
+        // For Commons-Chain
+        dirs.add(new File(subjectDir, "base/target/classes"));
+        // For Commons-Digester
+        dirs.add(new File(subjectDir, "core/target/classes"));
+        List<String> entries = new ArrayList<>(Arrays.asList(getExistingPaths(dirs)));
+        if (entries.isEmpty()) {
+            LOGGER.warn("No compiled classes found in {}, resolve bindings from sources instead", subjectDir);
+            return null;
+        }
+        String[] dependencies = getDependencyClasspath();
+        if (dependencies != null) {
+            entries.addAll(Arrays.asList(dependencies));
+        }
+        this.classpath = entries.toArray(new String[entries.size()]);
+        return this.classpath;
+    }
+
+    /**
+     * Get the class path of dependency jars of the subject, which is resolved by Maven and cached in the output directory.
+     * The cache is resolved again if a pom.xml of the subject is newer than it or any of its jars is missing.
+     *
+     * @return class path, or null if failed to resolve
+     */
+    public synchronized String[] getDependencyClasspath() {
+        File cache = new File(String.join("/", pathToOutputDir, projectId, "classpath.txt"));
+        String[] entries = isDependencyClasspathUpToDate(cache) ? readDependencyClasspath(cache, true) : null;
+        if (entries == null) {
+            cache.getParentFile().mkdirs();
+            try {
+                Files.deleteIfExists(cache.toPath());
+            } catch (IOException e) {
+                LOGGER.warn("Fail to delete dependency classpath: {}", e.getMessage());
+            }
+            MavenUtils.buildClasspath(getSubjectDir(), getMavenHome(), cache);
+            entries = readDependencyClasspath(cache, false);
+        }
+        if (entries == null) {
+            LOGGER.warn("Fail to resolve dependency classpath of {}", projectId);
+        }
+        return entries;
+    }
+
+    private boolean isDependencyClasspathUpToDate(File cache) {
+        if (!cache.exists()) {
+            return false;
+        }
+        File subjectDir = getSubjectDir();
+        // For Commons-Chain and Commons-Digester, poms of modules as well
+        for (File pom : new File[] {new File(subjectDir, "pom.xml"), new File(subjectDir, "base/pom.xml"), new File(subjectDir, "core/pom.xml")}) {
+            if (pom.exists() && cache.lastModified() < pom.lastModified()) {
+                LOGGER.info("Resolve dependency classpath again since {} has changed", pom);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param strict whether a missing jar invalidates the cache, otherwise it is skipped
+     * @return class path, or null if the cache does not exist or is invalidated
+     */
+    private static String[] readDependencyClasspath(File cache, boolean strict) {
+        if (!cache.exists()) {
+            return null;
+        }
+        List<String> entries = new ArrayList<>();
+        try {
+            for (String entry : new String(Files.readAllBytes(cache.toPath()), StandardCharsets.UTF_8).trim().split(File.pathSeparator)) {
+                if (entry.isEmpty()) {
+                    continue;
+                }
+                if (!new File(entry).exists()) {
+                    if (strict) {
+                        LOGGER.info("Resolve dependency classpath again since {} is missing", entry);
+                        return null;
+                    }
+                    continue;
+                }
+                entries.add(entry);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Fail to read dependency classpath: {}", e.getMessage());
+            return null;
+        }
+        return entries.toArray(new String[entries.size()]);
+    }
+
+    /**
+     * Get source directories to resolve bindings from,
+     * which are only test source directories if production classes are on the class path
+     */
+    private String[] getBindingSourceRoots(File subjectDir) {
+        return getClasspath(subjectDir) != null ? getTestSourceRoots(subjectDir) : getSourceRoots(subjectDir);
+    }
+
+    private static String[] getTestSourceRoots(File subjectDir) {
+        List<File> dirs = new ArrayList<>();
+        dirs.add(new File(subjectDir, "src/test/java"));
+        // For Commons-Chain
+        dirs.add(new File(subjectDir, "base/src/test/java"));
+        // For Commons-Digester
+        dirs.add(new File(subjectDir, "core/src/test/java"));
+        return getExistingPaths(dirs);
+    }
+
+    private static String[] getSourceRoots(File subjectDir) {
+        List<File> dirs = new ArrayList<>();
+        dirs.add(new File(subjectDir, "src/main/java"));
+        dirs.add(new File(subjectDir, "src/test/java"));
+        // For Commons-Chain
+        dirs.add(new File(subjectDir, "base/src/main/java"));
+        dirs.add(new File(subjectDir, "base/src/test/java"));
+        // For Commons-Digester
+        dirs.add(new File(subjectDir, "core/src/main/java"));
+        dirs.add(new File(subjectDir, "core/src/test/java"));
+        return getExistingPaths(dirs);
+    }
+
+    private static String[] getExistingPaths(List<File> dirs) {
+        List<String> roots = new ArrayList<>();
+        try {
+            for (File dir : dirs) {
+                if (dir.isDirectory()) {
+                    roots.add(dir.getCanonicalPath());
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn(e.getLocalizedMessage());
+        }
+        return roots.toArray(new String[roots.size()]);
     }
 
     private static String[] getSources(File subjectDir) {
@@ -131,18 +512,199 @@ public class Project {
         return sources;
     }
 
+    /**
+     * Restore test suites from the snapshot if possible, otherwise parse sources
+     */
+    private void load(Consumer<TestSuite> consumer) {
+        if ((useSnapshot && prepareFromSnapshot()) || (incremental && prepareIncrementally())) {
+            if (consumer != null) {
+                this.testSuites.forEach(consumer);
+            }
+        } else {
+            prepare(consumer);
+        }
+    }
+
     public void prepare() {
-        String pathToSubjectDir = String.join("/", pathToSubjectsDir, projectId);
-        File subjectDir = new File(pathToSubjectDir);
-        this.compilationUnits = getFileUnitMap(subjectDir);
+        prepare(null);
+    }
+
+    /**
+     * Parse sources, building each test suite as soon as its compilation unit is parsed
+     *
+     * @param consumer called with each test suite as it is built, possibly from parser threads, or null
+     */
+    public void prepare(Consumer<TestSuite> consumer) {
+        File subjectDir = getSubjectDir();
+        if (useSnapshot || incremental) {
+            this.sourceHashes = getSourceHashes(subjectDir);
+        }
+        final Map<String, TestSuite> built = new ConcurrentHashMap<>();
+        parse(subjectDir, (testFile, cu) -> {
+            TestSuite testSuite = new TestSuite(new File(testFile), cu);
+            built.put(testFile, testSuite);
+            if (consumer != null) {
+                consumer.accept(testSuite);
+            }
+        });
         this.testSuites = new ArrayList<>();
+        for (String testFile : getTestFiles(subjectDir)) {
+            if (built.containsKey(testFile)) {
+                testSuites.add(built.get(testFile));
+            }
+        }
+        this.parsed = true;
+        if (sourceHashes != null) {
+            getSnapshot().save(sourceHashes, testSuites);
+        }
+    }
+
+    private File getSubjectDir() {
+        return new File(String.join("/", pathToSubjectsDir, projectId));
+    }
+
+    /**
+     * Restore test suites from the snapshot without parsing sources
+     *
+     * @return true if restored
+     */
+    private boolean prepareFromSnapshot() {
+        File subjectDir = getSubjectDir();
+        Map<String, String> hashes = getSourceHashes(subjectDir);
+        if (hashes == null) {
+            return false;
+        }
+        List<TestSuite> restored = getSnapshot().load(hashes, getTestFiles(subjectDir));
+        if (restored == null) {
+            return false;
+        }
+        LOGGER.info("Restore {} test suites from snapshot", restored.size());
+        this.sourceHashes = hashes;
+        this.parsed = false;
+        this.testSuites = restored;
+        return true;
+    }
+
+    /**
+     * Parse only test files changed since the previous run and restore the others from the snapshot.
+     * Test suites are restored even if production sources have changed,
+     * so bindings of unchanged test files reflect the production sources of the previous run.
+     *
+     * @return true if the previous run saved a snapshot
+     */
+    private boolean prepareIncrementally() {
+        File subjectDir = getSubjectDir();
+        Snapshot snapshot = getSnapshot();
+        Map<String, String> previous = snapshot.getManifest();
+        Map<String, String> hashes = getSourceHashes(subjectDir);
+        if (previous.isEmpty() || hashes == null) {
+            return false;
+        }
+        Set<String> changedFiles = incrementalGitRange != null ? getChangedFilesByGit(subjectDir) : null;
         String[] testFiles = getTestFiles(subjectDir);
+        Map<String, TestSuite> restored = new HashMap<>();
+        List<String> changedTestFiles = new ArrayList<>();
         for (String testFile : testFiles) {
-            CompilationUnit cu = compilationUnits.get(testFile);
-            if (cu != null) {
-                TestSuite testSuite = new TestSuite(new File(testFile), cu);
-                testSuites.add(testSuite);
+            // A test file is restored only if its content is unchanged, e.g., not edited in the working tree,
+            // and the git revision range only adds files to re-parse
+            boolean changed = !hashes.get(testFile).equals(previous.get(testFile))
+                    || (changedFiles != null && changedFiles.contains(testFile));
+            TestSuite testSuite = changed ? null : snapshot.loadPrevious(testFile);
+            if (testSuite != null) {
+                restored.put(testFile, testSuite);
+            } else {
+                // Including one whose snapshot entry is missing or unreadable
+                changedTestFiles.add(testFile);
+            }
+        }
+        LOGGER.info("Re-parse {} changed test files and restore {} test suites", changedTestFiles.size(), restored.size());
+        String[] sources = changedTestFiles.toArray(new String[changedTestFiles.size()]);
+        final Map<String, TestSuite> built = new HashMap<>();
+        parse(sources, getClasspath(subjectDir), getBindingSourceRoots(subjectDir),
+                (testFile, cu) -> built.put(testFile, new TestSuite(new File(testFile), cu)));
+        this.testSuites = new ArrayList<>();
+        for (String testFile : testFiles) {
+            if (built.containsKey(testFile)) {
+                testSuites.add(built.get(testFile));
+            } else if (restored.containsKey(testFile)) {
+                testSuites.add(restored.get(testFile));
+            }
+        }
+        this.sourceHashes = hashes;
+        this.parsed = true;
+        snapshot.save(hashes, testSuites);
+        return true;
+    }
+
+    /**
+     * Get canonical paths of files changed in the configured git revision range
+     *
+     * @return changed files, or null if git fails
+     */
+    private Set<String> getChangedFilesByGit(File subjectDir) {
+        Set<String> ret = new HashSet<>();
+        try {
+            Process process = new ProcessBuilder("git", "diff", "--name-only", "--relative", incrementalGitRange)
+                    .directory(subjectDir).redirectErrorStream(true).start();
+            List<String> lines;
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                lines = br.lines().collect(Collectors.toList());
+            }
+            if (process.waitFor() != 0) {
+                LOGGER.warn("Fail to run git diff {}: {}", incrementalGitRange, String.join("\n", lines));
+                return null;
+            }
+            for (String line : lines) {
+                ret.add(new File(subjectDir, line).getCanonicalPath());
+            }
+        } catch (IOException | InterruptedException e) {
+            LOGGER.warn("Fail to run git diff {}: {}", incrementalGitRange, e.getMessage());
+            return null;
+        }
+        return ret;
+    }
+
+    private Snapshot getSnapshot() {
+        return new Snapshot(String.join("/", pathToOutputDir, projectId, "snapshot"), getParseEnvironmentStamp(getSubjectDir()));
+    }
+
+    /**
+     * Describe what bindings are resolved from other than sources,
+     * i.e., the parse environment and the size and last modified time of each class path entry
+     */
+    private String getParseEnvironmentStamp(File subjectDir) {
+        StringBuilder sb = new StringBuilder(parseEnvironment).append("\n");
+        String[] classpath = getClasspath(subjectDir);
+        if (classpath == null) {
+            return sb.toString();
+        }
+        for (String entry : classpath) {
+            long size = 0;
+            long lastModified = 0;
+            try (Stream<Path> paths = Files.walk(Paths.get(entry))) {
+                // e.g., classes rebuilt in target/classes
+                for (Path path : (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator) {
+                    size += Files.size(path);
+                    lastModified = Math.max(lastModified, Files.getLastModifiedTime(path).toMillis());
+                }
+            } catch (IOException | UncheckedIOException e) {
+                LOGGER.warn("Fail to stamp {}: {}", entry, e.getMessage());
+            }
+            sb.append(entry).append(",").append(size).append(",").append(lastModified).append("\n");
+        }
+        return sb.toString();
+    }
+
+    private static Map<String, String> getSourceHashes(File subjectDir) {
+        Map<String, String> hashes = new LinkedHashMap<>();
+        try {
+            for (String source : getSources(subjectDir)) {
+                hashes.put(source, Snapshot.hash(source));
             }
+        } catch (IOException e) {
+            LOGGER.warn("Fail to hash sources: {}", e.getMessage());
+            return null;
         }
+        return hashes;
     }
 }
@@ -0,0 +1,310 @@
+package jp.mzw.autoput.core;
+
+import jp.mzw.autoput.ast.EncodedMethod;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Store of the detection-relevant model of test suites.
+ * A manifest records the content hash of every source file, and each test suite is stored in a file
+ * named after the hash of its content, of the manifest and of the parse environment, since resolved bindings depend on all of them.
+ * Entries are therefore not addressed per file: an edit to any source invalidates every entry,
+ * and a snapshot saved in another parse environment, e.g., another parse_environment, dependencies or compiled classes, is not restored.
+ * Files are written to a temporary file and moved into place, and only those referenced by the latest manifest are kept.
+ */
+public class Snapshot {
+    protected static Logger LOGGER = LoggerFactory.getLogger(Snapshot.class);
+
+    private static final String MANIFEST = "manifest.csv";
+    private static final String ENVIRONMENT = "environment.txt";
+    private static final String SUFFIX = ".snapshot";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final int VERSION = 1;
+
+    protected Path dir;
+    /** Hash of the parse environment */
+    protected String environment;
+    /** Manifest saved by the previous run, read lazily */
+    private Map<String, String> manifest;
+
+    /**
+     * @param environment description of the parse environment, which must equal that of the saved snapshot to restore it
+     */
+    public Snapshot(String pathToDir, String environment) {
+        this.dir = Paths.get(pathToDir);
+        this.environment = hash(environment.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Restore test suites if no source has changed since the snapshot was saved.
+     *
+     * @param hashes content hashes of all sources
+     * @param testFiles test files in the order to restore
+     * @return restored test suites, or null if the snapshot is missing or outdated
+     */
+    public List<TestSuite> load(Map<String, String> hashes, String[] testFiles) {
+        if (!hashes.equals(getManifest())) {
+            return null;
+        }
+        List<TestSuite> ret = new ArrayList<>();
+        try {
+            for (String testFile : testFiles) {
+                // Test files having no test suite, e.g., non-Java files, are not saved
+                TestSuite testSuite = read(testFile);
+                if (testSuite != null) {
+                    ret.add(testSuite);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Fail to load snapshot: {}", e.getMessage());
+            return null;
+        }
+        return ret;
+    }
+
+    /**
+     * Restore a test suite as saved by the previous run
+     *
+     * @return restored test suite, or null if the previous run did not save it
+     */
+    public TestSuite loadPrevious(String testFile) {
+        try {
+            return read(testFile);
+        } catch (IOException e) {
+            LOGGER.warn("Fail to load snapshot of {}: {}", testFile, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Get content hashes of sources saved by the previous run,
+     * or an empty map if there is no snapshot or it was saved in another parse environment
+     */
+    public Map<String, String> getManifest() {
+        if (manifest == null) {
+            manifest = readHashes(dir.resolve(MANIFEST));
+            if (!manifest.isEmpty() && !environment.equals(readEnvironment())) {
+                LOGGER.info("Parse environment has changed since the snapshot was saved");
+                manifest = new LinkedHashMap<>();
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Save test suites parsed from sources having the given content hashes,
+     * deleting test suites saved for other sources
+     */
+    public void save(Map<String, String> hashes, List<TestSuite> testSuites) {
+        String environment = getEnvironmentHash(hashes);
+        Set<Path> saved = new HashSet<>();
+        try {
+            Files.createDirectories(dir);
+            for (TestSuite testSuite : testSuites) {
+                String hash = hashes.get(testSuite.getTestFile().getPath());
+                if (hash == null) {
+                    continue;
+                }
+                Path path = dir.resolve(getKey(environment, hash) + SUFFIX);
+                saved.add(path);
+                if (Files.exists(path)) {
+                    continue;
+                }
+                Path tmp = Files.createTempFile(dir, null, TMP_SUFFIX);
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                    out.writeInt(VERSION);
+                    write(out, testSuite);
+                }
+                move(tmp, path);
+            }
+            writeEnvironment();
+            writeHashes(dir.resolve(MANIFEST), hashes);
+            manifest = new LinkedHashMap<>(hashes);
+        } catch (IOException e) {
+            LOGGER.warn("Fail to save snapshot: {}", e.getMessage());
+            return;
+        }
+        prune(saved);
+    }
+
+    /**
+     * Delete test suites not referenced by the manifest, and temporary files left by interrupted saves
+     */
+    private void prune(Set<Path> saved) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if ((name.endsWith(SUFFIX) && !saved.contains(path)) || name.endsWith(TMP_SUFFIX)) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Fail to prune snapshot: {}", e.getMessage());
+        }
+    }
+
+    public static String hash(String pathToFile) throws IOException {
+        return hash(Files.readAllBytes(Paths.get(pathToFile)));
+    }
+
+    public static String hash(byte[] content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest(content)) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /* ------------------------------------------------------------------ */
+
+    private void write(DataOutputStream out, TestSuite testSuite) throws IOException {
+        out.writeUTF(testSuite.getTestClassName());
+        out.writeUTF(testSuite.getPackageName());
+        out.writeBoolean(testSuite.hasClassDeclaration());
+        out.writeBoolean(testSuite.hasClassDeclaration() && testSuite.alreadyParameterized());
+        out.writeInt(testSuite.getTestCases().size());
+        for (TestCase testCase : testSuite.getTestCases()) {
+            out.writeUTF(testCase.getName());
+            out.writeInt(testCase.getStartPosition());
+            out.writeInt(testCase.getLength());
+            testCase.getEncoding().write(out);
+        }
+    }
+
+    private TestSuite read(String testFile) throws IOException {
+        Map<String, String> previous = getManifest();
+        String hash = previous.get(testFile);
+        if (hash == null) {
+            return null;
+        }
+        Path path = dir.resolve(getKey(getEnvironmentHash(previous), hash) + SUFFIX);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != VERSION) {
+                throw new IOException("Unsupported snapshot version: " + path);
+            }
+            return read(in, new File(testFile));
+        }
+    }
+
+    private TestSuite read(DataInputStream in, File testFile) throws IOException {
+        String testClassName = in.readUTF();
+        String packageName = in.readUTF();
+        boolean hasClassDeclaration = in.readBoolean();
+        boolean parameterized = in.readBoolean();
+        TestSuite testSuite = new TestSuite(testFile, testClassName, packageName, hasClassDeclaration, parameterized);
+        int numOfTestCases = in.readInt();
+        for (int i = 0; i < numOfTestCases; i++) {
+            String name = in.readUTF();
+            int startPosition = in.readInt();
+            int length = in.readInt();
+            EncodedMethod encoding = EncodedMethod.read(in);
+            testSuite.getTestCases().add(new TestCase(name, testClassName, startPosition, length, encoding, testSuite));
+        }
+        return testSuite;
+    }
+
+    /**
+     * Read content hashes of files written by writeHashes
+     */
+    public static Map<String, String> readHashes(Path path) {
+        Map<String, String> ret = new LinkedHashMap<>();
+        if (!Files.exists(path)) {
+            return ret;
+        }
+        try (BufferedReader br = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                int index = line.lastIndexOf(',');
+                if (index < 0) {
+                    continue;
+                }
+                ret.put(line.substring(0, index), line.substring(index + 1));
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Fail to read hashes from {}: {}", path, e.getMessage());
+        }
+        return ret;
+    }
+
+    /**
+     * Write content hashes of files, replacing the given file atomically
+     */
+    public static void writeHashes(Path path, Map<String, String> hashes) throws IOException {
+        Path tmp = Files.createTempFile(path.toAbsolutePath().getParent(), null, TMP_SUFFIX);
+        try (BufferedWriter bw = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String> entry : hashes.entrySet()) {
+                bw.write(entry.getKey() + "," + entry.getValue());
+                bw.write("\n");
+            }
+        }
+        move(tmp, path);
+    }
+
+    private String readEnvironment() {
+        Path path = dir.resolve(ENVIRONMENT);
+        try {
+            return Files.exists(path) ? new String(Files.readAllBytes(path), StandardCharsets.UTF_8).trim() : null;
+        } catch (IOException e) {
+            LOGGER.warn("Fail to read parse environment from {}: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeEnvironment() throws IOException {
+        Path tmp = Files.createTempFile(dir, null, TMP_SUFFIX);
+        Files.write(tmp, environment.getBytes(StandardCharsets.UTF_8));
+        move(tmp, dir.resolve(ENVIRONMENT));
+    }
+
+    private static void move(Path tmp, Path path) throws IOException {
+        try {
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private String getEnvironmentHash(Map<String, String> hashes) {
+        StringBuilder sb = new StringBuilder(environment).append("\n");
+        for (Map.Entry<String, String> entry : hashes.entrySet()) {
+            sb.append(entry.getKey()).append(",").append(entry.getValue()).append("\n");
+        }
+        return hash(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String getKey(String environment, String hash) {
+        return hash((environment + ":" + hash).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,10 +1,14 @@
 package jp.mzw.autoput.core;
 
+import jp.mzw.autoput.ast.EncodedMethod;
+import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.MethodDeclaration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+
 /**
  * Created by TK on 7/19/17.
  */
@@ -16,12 +20,34 @@ public class TestCase {
     String className;
 
     TestSuite testSuite;
+    /** Position of the method declaration in the source */
+    int startPosition;
+    int length;
+    /** Encoding restored from a snapshot, or null if the test case has an AST */
+    EncodedMethod encoding;
+
     public TestCase(String name, String classname, MethodDeclaration method, CompilationUnit cu, TestSuite testSuite) {
         this.name = name;
         this.className = classname;
         this.method = method;
         this.cu = cu;
         this.testSuite = testSuite;
+        this.startPosition = method.getStartPosition();
+        this.length = method.getLength();
+    }
+
+    /**
+     * Create a test case restored from a snapshot, which has no AST
+     */
+    public TestCase(String name, String classname, int startPosition, int length, EncodedMethod encoding, TestSuite testSuite) {
+        this.name = name;
+        this.className = classname;
+        this.method = null;
+        this.cu = null;
+        this.testSuite = testSuite;
+        this.startPosition = startPosition;
+        this.length = length;
+        this.encoding = encoding;
     }
 
     public String getName() {
@@ -39,4 +65,19 @@ public class TestCase {
     public TestSuite getTestSuite() {
         return this.testSuite;
     }
+    public List<ASTNode> getNodes() {
+        return this.testSuite.getNodes(this.method);
+    }
+    public int getStartPosition() {
+        return this.startPosition;
+    }
+    public int getLength() {
+        return this.length;
+    }
+    public EncodedMethod getEncoding() {
+        if (this.encoding != null) {
+            return this.encoding;
+        }
+        return this.testSuite.getEncoding(this.method);
+    }
 }
@@ -2,6 +2,7 @@ package jp.mzw.autoput.core;
 
 import jp.mzw.autoput.ast.ASTUtils;
 import jp.mzw.autoput.ast.AllMethodFindVisitor;
+import jp.mzw.autoput.ast.EncodedMethod;
 import jp.mzw.autoput.ast.ClassDeclarationFindVisitor;
 import org.eclipse.jdt.core.dom.*;
 import org.slf4j.Logger;
@@ -13,8 +14,9 @@ import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 /**
  * Created by TK on 7/19/17.
@@ -26,21 +28,66 @@ public class TestSuite {
     protected String testClassName;
     protected List<TestCase> testCases;
 
+    protected String packageName;
+    protected boolean hasClassDeclaration;
+    protected Boolean parameterized;
+
+    /** Content of the test file captured when parsed, with its original line endings */
+    protected String sources;
+
     protected CompilationUnit cu;
     protected TypeDeclaration clazz;
 
     private MethodDeclaration autoPutTest;
 
+    /** Flattened node sequences of methods, computed at most once per method */
+    protected Map<MethodDeclaration, List<ASTNode>> flattenedNodes;
+    /** Encoded node sequences of methods, computed at most once per method */
+    protected Map<MethodDeclaration, EncodedMethod> encodings;
+
+    /**
+     * Create a test suite whose content is read on demand, e.g., parsed for detection which does not need it
+     */
     public TestSuite(File testFile, CompilationUnit cu) {
+        this(testFile, cu, null);
+    }
+
+    /**
+     * Create a test suite from the given content of the test file, which the AST is parsed from, or null to read it on demand
+     */
+    public TestSuite(File testFile, CompilationUnit cu, String sources) {
         this.testFile = testFile;
+        this.sources = sources;
         String pathToTestFile = testFile.getAbsolutePath().substring(testFile.getParent().length() + 1);
         this.testClassName = pathToTestFile.replace(".java", "").replaceAll("/", ".");
 
         this.testCases = new ArrayList<>();
         this.cu = cu;
         this.autoPutTest = null;
+        this.flattenedNodes = new HashMap<>();
+        this.encodings = new HashMap<>();
         prepare();
         setClass();
+        this.packageName = cu.getPackage() != null ? cu.getPackage().getName().toString() : "";
+        this.hasClassDeclaration = clazz != null;
+    }
+
+    /**
+     * Create a test suite restored from a snapshot, which has no AST
+     */
+    public TestSuite(File testFile, String testClassName, String packageName, boolean hasClassDeclaration, boolean parameterized) {
+        this.testFile = testFile;
+        this.testClassName = testClassName;
+        this.packageName = packageName;
+        this.hasClassDeclaration = hasClassDeclaration;
+        this.parameterized = parameterized;
+
+        this.testCases = new ArrayList<>();
+        this.cu = null;
+        this.clazz = null;
+        this.autoPutTest = null;
+        this.flattenedNodes = new HashMap<>();
+        this.encodings = new HashMap<>();
     }
 
     public File getTestFile() {
@@ -50,9 +97,21 @@ public class TestSuite {
     public String getTestClassName() {
         return this.testClassName;
     }
+    public String getPackageName() {
+        return this.packageName;
+    }
     public List<TestCase> getTestCases() {
         return this.testCases;
     }
+    public boolean hasClassDeclaration() {
+        return this.hasClassDeclaration;
+    }
+    /**
+     * Whether this test suite is restored from a snapshot and therefore has no AST
+     */
+    public boolean isRestored() {
+        return this.cu == null;
+    }
     public CompilationUnit getCu() {
         return this.cu;
     }
@@ -63,6 +122,28 @@ public class TestSuite {
         return this.autoPutTest;
     }
 
+    /**
+     * Get all nodes of the given method with minus number literals flattened.
+     * The result is cached, so callers must not modify it.
+     */
+    public List<ASTNode> getNodes(MethodDeclaration method) {
+        List<ASTNode> nodes = flattenedNodes.get(method);
+        if (nodes == null) {
+            nodes = ASTUtils.flattenMinusNumberLiteral(ASTUtils.getAllNodes(method));
+            flattenedNodes.put(method, nodes);
+        }
+        return nodes;
+    }
+
+    public EncodedMethod getEncoding(MethodDeclaration method) {
+        EncodedMethod encoding = encodings.get(method);
+        if (encoding == null) {
+            encoding = EncodedMethod.encode(getNodes(method));
+            encodings.put(method, encoding);
+        }
+        return encoding;
+    }
+
     private void prepare() {
         AllMethodFindVisitor visitor = new AllMethodFindVisitor();
         cu.accept(visitor);
@@ -86,12 +167,38 @@ public class TestSuite {
         this.clazz = visitor.getClassDeclaration();
     }
 
+    /**
+     * Get the content of the test file, which is read only once
+     */
     public String getTestSources() throws IOException {
-        return Files.lines(Paths.get(testFile.getPath()))
-                .collect(Collectors.joining(System.getProperty("line.separator")));
+        if (sources == null) {
+            sources = new String(Files.readAllBytes(Paths.get(testFile.getPath())), Charset.defaultCharset());
+        }
+        return sources;
+    }
+
+    /**
+     * Read the content of the given test file in the default encoding as ASTParser does
+     *
+     * @return content, or null if failed
+     */
+    public static String readSources(File testFile) {
+        try {
+            return new String(Files.readAllBytes(Paths.get(testFile.getPath())), Charset.defaultCharset());
+        } catch (IOException e) {
+            LOGGER.warn("Fail to read {}: {}", testFile, e.getMessage());
+            return null;
+        }
     }
 
     public boolean alreadyParameterized() {
+        if (parameterized == null) {
+            parameterized = _alreadyParameterized();
+        }
+        return parameterized;
+    }
+
+    private boolean _alreadyParameterized() {
         List<Annotation> annotations = ASTUtils.getAnnotations(clazz);
         for (Annotation annotation : annotations) {
             if (!(annotation instanceof SingleMemberAnnotation)) {
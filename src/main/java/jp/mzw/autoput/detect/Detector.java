@@ -1,20 +1,15 @@
 package jp.mzw.autoput.detect;
 
 import jp.mzw.autoput.ast.ASTUtils;
+import jp.mzw.autoput.ast.EncodedMethod;
 import jp.mzw.autoput.core.Project;
+import jp.mzw.autoput.core.Snapshot;
+import jp.mzw.autoput.core.TestCase;
 import jp.mzw.autoput.core.TestSuite;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
 import org.eclipse.jdt.core.dom.ASTNode;
-import org.eclipse.jdt.core.dom.ClassInstanceCreation;
-import org.eclipse.jdt.core.dom.InfixExpression;
-import org.eclipse.jdt.core.dom.MethodDeclaration;
-import org.eclipse.jdt.core.dom.MethodInvocation;
-import org.eclipse.jdt.core.dom.PostfixExpression;
-import org.eclipse.jdt.core.dom.PrefixExpression;
-import org.eclipse.jdt.core.dom.SimpleName;
-import org.eclipse.jdt.core.dom.SimpleType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,9 +20,14 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 
 public class Detector {
     protected static Logger LOGGER = LoggerFactory.getLogger(Detector.class);
@@ -43,6 +43,9 @@ public class Detector {
     }
 
     public void detect() {
+        // Rows of the previous run are reused for test suites unchanged since then
+        Map<String, List<String>> previousRows = project.isIncremental() ? _getPreviousRows() : null;
+        Map<String, String> previousHashes = previousRows != null ? Snapshot.readHashes(Paths.get(getDetectHashesPath())) : null;
         if (!Files.exists(Paths.get(getDetectResultPath()))) {
             try {
                 Files.createDirectories(Paths.get(getDetectResultDir()));
@@ -51,32 +54,146 @@ public class Detector {
                 e.printStackTrace();
             }
         }
+        // Rows are keyed by test suite so that the output order does not depend on parallelism
+        Map<TestSuite, String> parameterizedRows = new ConcurrentHashMap<>();
+        Map<TestSuite, List<String>> detectedRows = new ConcurrentHashMap<>();
+        int parallelism = project.getDetectParallelism();
+        if (1 < parallelism) {
+            List<TestSuite> testSuites = project.getTestSuites();
+            // Encode test methods in advance because resolving bindings on JDT ASTs is not thread-safe
+            for (TestSuite testSuite : testSuites) {
+                if (!testSuite.hasClassDeclaration()) {
+                    continue;
+                }
+                for (TestCase testCase : testSuite.getTestCases()) {
+                    testCase.getEncoding();
+                }
+            }
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.submit(() -> testSuites.parallelStream()
+                        .forEach(testSuite -> _detectTestSuite(testSuite, parameterizedRows, detectedRows, previousRows, previousHashes))).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while detecting in parallel", e);
+            } catch (ExecutionException e) {
+                // 直列の場合と同様に例外を伝播させ, 不完全な結果は出力しない
+                LOGGER.error("Fail to detect in parallel: {}", e.getCause().getMessage());
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                } else if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            } finally {
+                pool.shutdown();
+            }
+        } else {
+            // Detect in each test suite as soon as it is parsed
+            project.forEachTestSuite(testSuite -> _detectTestSuite(testSuite, parameterizedRows, detectedRows, previousRows, previousHashes));
+        }
+        List<TestSuite> testSuites = project.getTestSuites();
         List<String> parameterizedTests = new ArrayList<>();
         List<String> contents = new ArrayList<>();
-        for (TestSuite testSuite : getTestSuites()) {
-            if (testSuite.getClassDeclaration() == null) {
-                continue;
+        for (TestSuite testSuite : testSuites) {
+            if (parameterizedRows.containsKey(testSuite)) {
+                parameterizedTests.add(parameterizedRows.get(testSuite));
             }
-            if (testSuite.alreadyParameterized()) {
-                StringBuilder sb = new StringBuilder();
-                sb.append(String.join(",", testSuite.getCu().getPackage().getName().toString(), testSuite.getTestClassName()));
-                sb.append("\n");
-                parameterizedTests.add(sb.toString());
-                continue;
+            if (detectedRows.containsKey(testSuite)) {
+                contents.addAll(detectedRows.get(testSuite));
+            }
+        }
+        if (previousRows != null) {
+            // Clusters in removed test suites
+            for (TestSuite testSuite : testSuites) {
+                previousRows.remove(String.join(",", testSuite.getPackageName(), testSuite.getTestClassName()));
             }
-            Map<MethodDeclaration, List<MethodDeclaration>> detected = _detect(testSuite);
-            for (MethodDeclaration method : detected.keySet()) {
-                StringBuilder sb = new StringBuilder();
-                sb.append(String.join(",", testSuite.getCu().getPackage().getName().toString(), testSuite.getTestClassName(), method.getName().getIdentifier()));
-                for (MethodDeclaration similarMethod : detected.get(method)) {
-                    sb.append(",").append(similarMethod.getName().getIdentifier());
+            for (List<String> rows : previousRows.values()) {
+                for (String row : rows) {
+                    LOGGER.info("Invalidated cluster: {}", row.trim());
                 }
-                sb.append("\n");
-                contents.add(sb.toString());
             }
         }
         _outputDetectResults(contents);
         _outputParameterizedTests(parameterizedTests);
+        if (project.isIncremental()) {
+            _outputDetectHashes(testSuites);
+        }
+    }
+
+    private void _detectTestSuite(TestSuite testSuite, Map<TestSuite, String> parameterizedRows, Map<TestSuite, List<String>> detectedRows,
+                                  Map<String, List<String>> previousRows, Map<String, String> previousHashes) {
+        if (!testSuite.hasClassDeclaration()) {
+            return;
+        }
+        if (testSuite.alreadyParameterized()) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.join(",", testSuite.getPackageName(), testSuite.getTestClassName()));
+            sb.append("\n");
+            parameterizedRows.put(testSuite, sb.toString());
+            return;
+        }
+        String key = String.join(",", testSuite.getPackageName(), testSuite.getTestClassName());
+        String hash = project.getSourceHash(testSuite.getTestFile());
+        if (previousRows != null && hash != null && hash.equals(previousHashes.get(testSuite.getTestFile().getPath()))) {
+            detectedRows.put(testSuite, previousRows.getOrDefault(key, new ArrayList<>()));
+            return;
+        }
+        List<String> rows = new ArrayList<>();
+        Map<TestCase, List<TestCase>> detected = _detect(testSuite);
+        for (TestCase testCase : detected.keySet()) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.join(",", testSuite.getPackageName(), testSuite.getTestClassName(), testCase.getName()));
+            for (TestCase similarTestCase : detected.get(testCase)) {
+                sb.append(",").append(similarTestCase.getName());
+            }
+            sb.append("\n");
+            rows.add(sb.toString());
+        }
+        detectedRows.put(testSuite, rows);
+        if (previousRows != null) {
+            for (String row : previousRows.getOrDefault(key, new ArrayList<>())) {
+                if (!rows.contains(row)) {
+                    LOGGER.info("Invalidated cluster: {}", row.trim());
+                }
+            }
+        }
+    }
+
+    /**
+     * Get rows of the previous detect result grouped by package and class names,
+     * or null if the previous run did not record hashes of test files
+     */
+    private Map<String, List<String>> _getPreviousRows() {
+        if (!Files.exists(Paths.get(getDetectHashesPath())) || !Files.exists(Paths.get(getDetectResultPath()))) {
+            return null;
+        }
+        Map<String, List<String>> ret = new HashMap<>();
+        for (CSVRecord record : getDetectResults()) {
+            String key = String.join(",", record.get(0), record.get(1));
+            List<String> rows = ret.get(key);
+            if (rows == null) {
+                rows = new ArrayList<>();
+                ret.put(key, rows);
+            }
+            rows.add(String.join(",", record) + "\n");
+        }
+        return ret;
+    }
+
+    private void _outputDetectHashes(List<TestSuite> testSuites) {
+        Map<String, String> hashes = new LinkedHashMap<>();
+        for (TestSuite testSuite : testSuites) {
+            String hash = project.getSourceHash(testSuite.getTestFile());
+            if (hash != null) {
+                hashes.put(testSuite.getTestFile().getPath(), hash);
+            }
+        }
+        try {
+            Snapshot.writeHashes(Paths.get(getDetectHashesPath()), hashes);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     public List<CSVRecord> getDetectResults() {
@@ -122,103 +239,112 @@ public class Detector {
         return String.join("/", getDetectResultDir(), DETECT_RESULT);
     }
 
+    /**
+     * Path to content hashes of test files from which the detect result is computed
+     */
+    protected String getDetectHashesPath() {
+        return getDetectResultPath().replace(".csv", "_hashes.csv");
+    }
+
     protected String getParameterizedTestsPath() {
         return String.join("/", getDetectResultDir(), PARAMETERIZED_TESTS);
     }
 
-    protected Map<MethodDeclaration, List<MethodDeclaration>> _detect(TestSuite testSuite) {
-        int size = testSuite.getTestCases().size();
-        Map<MethodDeclaration, List<MethodDeclaration>> detected = new HashMap<>();
+    protected Map<TestCase, List<TestCase>> _detect(TestSuite testSuite) {
+        List<TestCase> testCases = testSuite.getTestCases();
+        int size = testCases.size();
+        // Keep the order of registration so that the output is deterministic
+        Map<TestCase, List<TestCase>> detected = new LinkedHashMap<>();
         boolean[] registered = new boolean[size];
-        for (int i = 0; i < size; i++) {
-            if (registered[i]) {
-                continue;
-            }
-            for (int j = i + 1; j < size; j++) {
-                if (registered[j]) {
+        // Similar methods always share a fingerprint, so only compare methods within the same bucket
+        for (List<Integer> bucket : _bucketByFingerprint(testCases).values()) {
+            for (int x = 0; x < bucket.size(); x++) {
+                int i = bucket.get(x);
+                if (registered[i]) {
                     continue;
                 }
-                MethodDeclaration src = testSuite.getTestCases().get(i).getMethodDeclaration();
-                MethodDeclaration dst = testSuite.getTestCases().get(j).getMethodDeclaration();
-                // Compare the ASTs
-                if (similarAST(src, dst)) {
-                    MethodDeclaration key = testSuite.getTestCases().get(i).getMethodDeclaration();
-                    List<MethodDeclaration> similarMethods = detected.get(key);
-                    if (similarMethods == null) {
-                        similarMethods = new ArrayList<>();
-                        registered[i] = true;
-                        detected.put(key, similarMethods);
+                for (int y = x + 1; y < bucket.size(); y++) {
+                    int j = bucket.get(y);
+                    if (registered[j]) {
+                        continue;
+                    }
+                    TestCase src = testCases.get(i);
+                    TestCase dst = testCases.get(j);
+                    // Compare the ASTs
+                    if (_similar(src, dst)) {
+                        List<TestCase> similarMethods = detected.get(src);
+                        if (similarMethods == null) {
+                            similarMethods = new ArrayList<>();
+                            registered[i] = true;
+                            detected.put(src, similarMethods);
+                        }
+                        similarMethods.add(dst);
+                        registered[j] = true;
                     }
-                    similarMethods.add(testSuite.getTestCases().get(j).getMethodDeclaration());
-                    registered[j] = true;
                 }
             }
         }
         return detected;
     }
 
+    /**
+     * Group indices of test cases by their structural fingerprint, keeping the original order in each bucket
+     */
+    protected Map<Integer, List<Integer>> _bucketByFingerprint(List<TestCase> testCases) {
+        Map<Integer, List<Integer>> buckets = new LinkedHashMap<>();
+        for (int i = 0; i < testCases.size(); i++) {
+            int fingerprint = _fingerprint(testCases.get(i));
+            List<Integer> bucket = buckets.get(fingerprint);
+            if (bucket == null) {
+                bucket = new ArrayList<>();
+                buckets.put(fingerprint, bucket);
+            }
+            bucket.add(i);
+        }
+        return buckets;
+    }
+
+    protected int _fingerprint(TestCase testCase) {
+        return testCase.getEncoding().getFingerprint();
+    }
+
+    protected boolean _similar(TestCase src, TestCase dst) {
+        return similarAST(src.getEncoding(), dst.getEncoding());
+    }
+
     public static boolean similarAST(ASTNode src1, ASTNode src2) {
         List<ASTNode> nodes1 = ASTUtils.flattenMinusNumberLiteral(ASTUtils.getAllNodes(src1));
         List<ASTNode> nodes2 = ASTUtils.flattenMinusNumberLiteral(ASTUtils.getAllNodes(src2));
-        if (nodes1.size() != nodes2.size()) {
+        return similarAST(nodes1, nodes2);
+    }
+
+    public static boolean similarAST(List<ASTNode> nodes1, List<ASTNode> nodes2) {
+        return similarAST(EncodedMethod.encode(nodes1), EncodedMethod.encode(nodes2));
+    }
+
+    /**
+     * Two methods are similar if they have the same node classes, operators, invoked method names and type names,
+     * and their identifiers are the same except for declarations and extractable constants.
+     */
+    public static boolean similarAST(EncodedMethod src1, EncodedMethod src2) {
+        if (src1.size() != src2.size()) {
             return false;
         }
-        for (int i = 0; i < nodes1.size(); i++) {
-            ASTNode node1 = nodes1.get(i);
-            ASTNode node2 = nodes2.get(i);
-            if (!node1.getClass().equals(node2.getClass())) {
-                return false;
+        if (!Arrays.equals(src1.getKinds(), src2.getKinds())) {
+            return false;
+        }
+        if (!Arrays.equals(src1.getOperators(), src2.getOperators())) {
+            return false;
+        }
+        int[] kinds = src1.getKinds();
+        int[] labels1 = src1.getLabels();
+        int[] labels2 = src2.getLabels();
+        for (int i = 0; i < kinds.length; i++) {
+            if (labels1[i] == labels2[i]) {
+                continue;
             }
-            if (node1 instanceof MethodInvocation) {
-                MethodInvocation tmp1 = (MethodInvocation) node1;
-                MethodInvocation tmp2 = (MethodInvocation) node2;
-                if (!tmp1.getName().getIdentifier().equals(tmp2.getName().getIdentifier())) {
-                    return false;
-                }
-            } else if (node1 instanceof InfixExpression) {
-                InfixExpression tmp1 = (InfixExpression) node1;
-                InfixExpression tmp2 = (InfixExpression) node2;
-                if (!tmp1.getOperator().equals(tmp2.getOperator())) {
-                    return false;
-                }
-            } else if (node1 instanceof PrefixExpression) {
-                PrefixExpression tmp1 = (PrefixExpression) node1;
-                PrefixExpression tmp2 = (PrefixExpression) node2;
-                if (!tmp1.getOperator().equals(tmp2.getOperator())) {
-                    return false;
-                }
-            } else if (node1 instanceof PostfixExpression) {
-                PostfixExpression tmp1 = (PostfixExpression) node1;
-                PostfixExpression tmp2 = (PostfixExpression) node2;
-                if (!tmp1.getOperator().equals(tmp2.getOperator())) {
-                    return false;
-                }
-            } else if (node1 instanceof SimpleType) {
-                SimpleType tmp1 = (SimpleType) node1;
-                SimpleType tmp2 = (SimpleType) node2;
-                if (!tmp1.getName().toString().equals(tmp2.getName().toString())) {
-                    return false;
-                }
-            } else if (node1 instanceof ClassInstanceCreation) {
-                ClassInstanceCreation tmp1 = (ClassInstanceCreation) node1;
-                ClassInstanceCreation tmp2 = (ClassInstanceCreation) node2;
-                if (!tmp1.getType().toString().equals(tmp2.getType().toString())) {
-                    return false;
-                }
-            } else if (node1 instanceof SimpleName) {
-                SimpleName tmp1 =(SimpleName) node1;
-                SimpleName tmp2 =(SimpleName) node2;
-                if (tmp1.isDeclaration() && tmp2.isDeclaration()) {
-                    continue;
-                }
-                if (ASTUtils.canExtract(tmp1) && ASTUtils.canExtract(tmp2)
-                        && tmp1.resolveTypeBinding().getName().equals(tmp2.resolveTypeBinding().getName())
-                        && (ASTUtils.isConst(tmp1) && ASTUtils.isConst(tmp1))) {
-                    continue;
-                }
-                if (!tmp1.getIdentifier().equals(tmp2.getIdentifier())) {
-                    return false;
-                }
+            if (kinds[i] != ASTNode.SIMPLE_NAME || !EncodedMethod.maskable(src1, src2, i)) {
+                return false;
             }
         }
         return true;
@@ -0,0 +1,211 @@
+package jp.mzw.autoput.generate;
+
+import jp.mzw.autoput.Main;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
+import org.eclipse.jdt.core.dom.BooleanLiteral;
+import org.eclipse.jdt.core.dom.CharacterLiteral;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.NumberLiteral;
+import org.eclipse.jdt.core.dom.StringLiteral;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Data points written to a binary resource next to PUT instead of static fields,
+ * which the PUT reads lazily by a @DataPoints method.
+ * The resource has the number of data points followed by their values in the order of the parameters of Fixture.
+ */
+class ExternalDataPoints {
+
+    /**
+     * Encode data points whose values are all constants of String or primitive types
+     *
+     * @param rows values of each data point
+     * @param kinds type of each value
+     * @return encoded data points without duplicates, or null if any value cannot be encoded
+     */
+    static byte[] encode(List<List<ASTNode>> rows, List<TypeLattice.Kind> kinds) {
+        List<byte[]> encoded = new ArrayList<>();
+        Set<ByteBuffer> found = new HashSet<>();
+        try {
+            for (List<ASTNode> row : rows) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                for (int i = 0; i < row.size(); i++) {
+                    if (kinds.size() <= i || !write(out, kinds.get(i), row.get(i))) {
+                        return null;
+                    }
+                }
+                out.flush();
+                // 同一のdata pointは1つにまとめる
+                if (found.add(ByteBuffer.wrap(bytes.toByteArray()))) {
+                    encoded.add(bytes.toByteArray());
+                }
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(encoded.size());
+            for (byte[] row : encoded) {
+                out.write(row);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // e.g., too long string
+            return null;
+        }
+    }
+
+    /**
+     * Create a @DataPoints method reading data points from the resource
+     */
+    static BodyDeclaration createDataPointsMethod(AST ast, String fixtureClass, List<TypeLattice.Kind> kinds) {
+        List<String> reads = new ArrayList<>();
+        for (TypeLattice.Kind kind : kinds) {
+            reads.add("in." + getReadMethod(kind) + "()");
+        }
+        String source = "@DataPoints\n"
+                + "public static " + fixtureClass + "[] data() throws java.io.IOException {\n"
+                + "java.io.DataInputStream in = new java.io.DataInputStream(new java.io.BufferedInputStream("
+                + Main.PUT + ".class.getResourceAsStream(\"" + Main.PUT + Main.DATA_POINTS + "\")));\n"
+                + "try {\n"
+                + fixtureClass + "[] data = new " + fixtureClass + "[in.readInt()];\n"
+                + "for (int i = 0; i < data.length; i++) {\n"
+                + "data[i] = new " + fixtureClass + "(" + String.join(", ", reads) + ");\n"
+                + "}\n"
+                + "return data;\n"
+                + "} finally {\n"
+                + "in.close();\n"
+                + "}\n"
+                + "}\n";
+        ASTParser parser = ASTParser.newParser(AST.JLS8);
+        parser.setKind(ASTParser.K_CLASS_BODY_DECLARATIONS);
+        parser.setSource(source.toCharArray());
+        TypeDeclaration parsed = (TypeDeclaration) parser.createAST(null);
+        return (BodyDeclaration) ASTNode.copySubtree(ast, (ASTNode) parsed.bodyDeclarations().get(0));
+    }
+
+    /* --------------------- helper -------------------------------------- */
+
+    private static boolean write(DataOutputStream out, TypeLattice.Kind kind, ASTNode node) throws IOException {
+        Object value = getConstantValue(node);
+        if (value == null) {
+            return false;
+        }
+        if (kind == TypeLattice.Kind.STRING && value instanceof String) {
+            out.writeUTF((String) value);
+        } else if (kind == TypeLattice.Kind.CHAR && value instanceof Character) {
+            out.writeChar((Character) value);
+        } else if (kind == TypeLattice.Kind.BOOLEAN && value instanceof Boolean) {
+            out.writeBoolean((Boolean) value);
+        } else if (kind.isNumeric() && value instanceof Number) {
+            Number number = (Number) value;
+            switch (kind) {
+                case BYTE:
+                    out.writeByte(number.byteValue());
+                    break;
+                case SHORT:
+                    out.writeShort(number.shortValue());
+                    break;
+                case INT:
+                    out.writeInt(number.intValue());
+                    break;
+                case LONG:
+                    out.writeLong(number.longValue());
+                    break;
+                case FLOAT:
+                    out.writeFloat(number.floatValue());
+                    break;
+                default:
+                    out.writeDouble(number.doubleValue());
+                    break;
+            }
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static String getReadMethod(TypeLattice.Kind kind) {
+        switch (kind) {
+            case BYTE:
+                return "readByte";
+            case SHORT:
+                return "readShort";
+            case INT:
+                return "readInt";
+            case LONG:
+                return "readLong";
+            case FLOAT:
+                return "readFloat";
+            case DOUBLE:
+                return "readDouble";
+            case STRING:
+                return "readUTF";
+            case CHAR:
+                return "readChar";
+            default:
+                return "readBoolean";
+        }
+    }
+
+    /**
+     * @return value of the given constant, or null if not a constant
+     */
+    private static Object getConstantValue(ASTNode node) {
+        if (node instanceof NumberLiteral) {
+            // minusはtokenに含まれている
+            return parseNumber(((NumberLiteral) node).getToken());
+        } else if (node instanceof StringLiteral) {
+            return ((StringLiteral) node).getLiteralValue();
+        } else if (node instanceof CharacterLiteral) {
+            return ((CharacterLiteral) node).charValue();
+        } else if (node instanceof BooleanLiteral) {
+            return ((BooleanLiteral) node).booleanValue();
+        } else if (node instanceof Expression) {
+            return ((Expression) node).resolveConstantExpressionValue();
+        }
+        return null;
+    }
+
+    private static Number parseNumber(String token) {
+        String value = token.replace("_", "");
+        boolean negative = value.startsWith("-");
+        if (negative) {
+            value = value.substring(1);
+        }
+        String integral = value.endsWith("L") || value.endsWith("l") ? value.substring(0, value.length() - 1) : value;
+        try {
+            long ret;
+            if (integral.startsWith("0x") || integral.startsWith("0X")) {
+                ret = Long.parseUnsignedLong(integral.substring(2), 16);
+            } else if (integral.startsWith("0b") || integral.startsWith("0B")) {
+                ret = Long.parseUnsignedLong(integral.substring(2), 2);
+            } else if (integral.startsWith("0") && 1 < integral.length()) {
+                ret = Long.parseUnsignedLong(integral.substring(1), 8);
+            } else {
+                ret = Long.parseLong(integral);
+            }
+            return negative ? -ret : ret;
+        } catch (NumberFormatException e) {
+            // floating point
+        }
+        try {
+            double ret = Double.parseDouble(value);
+            return negative ? -ret : ret;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -2,16 +2,13 @@ package jp.mzw.autoput.generate;
 
 import jp.mzw.autoput.Main;
 import jp.mzw.autoput.ast.ASTUtils;
-import jp.mzw.autoput.core.TestCase;
 import jp.mzw.autoput.core.TestSuite;
-import jp.mzw.autoput.detect.Detector;
 import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
 import org.eclipse.jdt.core.dom.Annotation;
 import org.eclipse.jdt.core.dom.ArrayAccess;
 import org.eclipse.jdt.core.dom.ArrayInitializer;
-import org.eclipse.jdt.core.dom.ArrayType;
 import org.eclipse.jdt.core.dom.Assignment;
 import org.eclipse.jdt.core.dom.Block;
 import org.eclipse.jdt.core.dom.CastExpression;
@@ -58,14 +55,40 @@ public class GenerateEngine {
     protected static final String FIXTURE_NAME = "fixture";
 
     protected TestSuite testSuite;
+    /** Whether Fixture has a field of the precise type for each input and expected, instead of Object arrays */
+    protected boolean typedFixture;
+    /** Whether data points are written to a resource read by PUT, which requires the typed Fixture */
+    protected boolean externalDataPoints;
+    /** Data points written to the resource by the last generation, or null if inlined */
+    protected byte[] dataPoints;
 
     public GenerateEngine(TestSuite testSuite) {
+        this(testSuite, false);
+    }
+
+    public GenerateEngine(TestSuite testSuite, boolean typedFixture) {
+        this(testSuite, typedFixture, false);
+    }
+
+    public GenerateEngine(TestSuite testSuite, boolean typedFixture, boolean externalDataPoints) {
         this.testSuite = testSuite;
+        this.typedFixture = typedFixture || externalDataPoints;
+        this.externalDataPoints = externalDataPoints;
+    }
+
+    /**
+     * Get data points to be deployed next to the generated PUT
+     *
+     * @return data points, or null if they are inlined in PUT
+     */
+    public byte[] getDataPoints() {
+        return this.dataPoints;
     }
 
     protected AST ast;
     protected CompilationUnit cu;
     protected ASTRewrite rewrite;
+    protected ParameterizationPlan plan;
 
     public CompilationUnit getCompilationUnit() {
         return testSuite.getCu();
@@ -106,32 +129,13 @@ public class GenerateEngine {
     }
 
     protected void _modifyTestMethod(MethodDeclaration origin) {
-        List<ASTNode> mostDifferentNodes = null;
-        // 共通部分が一番少ないメソッドを探す
-        for (TestCase testCase : testSuite.getTestCases()) {
-            MethodDeclaration method = testCase.getMethodDeclaration();
-            if (method.equals(origin)) {
-                continue;
-            }
-            if (Detector.similarAST(origin, method)) {
-                if (mostDifferentNodes == null) {
-                    mostDifferentNodes = GenerateHelper.getParameterNodes(method, origin);
-                } else if (mostDifferentNodes.size() < ASTUtils.getDifferentNodes(origin, method).size()) {
-                    mostDifferentNodes = GenerateHelper.getParameterNodes(method, origin);
-                }
-            }
+        if (typedFixture) {
+            _modifyTestMethodWithTypedFixture();
+            return;
         }
         // commonじゃないnodeをinputとexpectedに変更する
-        // commonsじゃないnodeをinputとexpectedに分ける
-        List<ASTNode> inputRelatedNodes = new ArrayList<>();
-        List<ASTNode> expectedRelatedNodes = new ArrayList<>();
-        for (ASTNode node : mostDifferentNodes) {
-            if (GenerateHelper.isInExpectedDeclaringNode(origin, node)) {
-                expectedRelatedNodes.add(node);
-            } else {
-                inputRelatedNodes.add(node);
-            }
-        }
+        List<ASTNode> inputRelatedNodes = plan.getInputRelatedNodes();
+        List<ASTNode> expectedRelatedNodes = plan.getExpectedRelatedNodes();
         // expectedを置換する
         if (expectedRelatedNodes.size() == 1) {
             ASTNode target = expectedRelatedNodes.get(0);
@@ -155,7 +159,7 @@ public class GenerateEngine {
                 ArrayAccess arrayAccess = ast.newArrayAccess();
                 arrayAccess.setArray(fixtureExpected);
                 arrayAccess.setIndex(ast.newNumberLiteral(String.valueOf(i)));
-                boolean isObjectArrayType = GenerateHelper.isObjectArrayType(_getExpectedType(origin));
+                boolean isObjectArrayType = GenerateHelper.isObjectArrayType(plan.getExpectedType());
                 if (isObjectArrayType && GenerateHelper.isBooleanType(target)) {
                     replace = _convertObjectToPrimitiveWrapper(arrayAccess, "Boolean");
                 } else if (isObjectArrayType && GenerateHelper.isCharacterType(target)) {
@@ -209,7 +213,7 @@ public class GenerateEngine {
                 ArrayAccess arrayAccess = ast.newArrayAccess();
                 arrayAccess.setArray(fixtureInput);
                 arrayAccess.setIndex(ast.newNumberLiteral(String.valueOf(i)));
-                boolean isObjectArrayType = GenerateHelper.isObjectArrayType(_getInputType(origin));
+                boolean isObjectArrayType = GenerateHelper.isObjectArrayType(plan.getInputType());
                 if (isObjectArrayType && GenerateHelper.isBooleanType(target)) {
                     replace = _convertObjectToPrimitiveWrapper(arrayAccess, "Boolean");
                 } else if (isObjectArrayType && GenerateHelper.isCharacterType(target)) {
@@ -228,9 +232,9 @@ public class GenerateEngine {
                     replace = _convertObjectToPrimitiveWrapper(arrayAccess, "Double");
                 } else if (isObjectArrayType && GenerateHelper.canBeCasted(target)) {
                     replace = _castObject(arrayAccess, target);
-                } else if (GenerateHelper.isDoubleArrayType(_getInputType(origin)) && GenerateHelper.shouldCastDoubleToInt(target)) {
+                } else if (GenerateHelper.isDoubleArrayType(plan.getInputType()) && GenerateHelper.shouldCastDoubleToInt(target)) {
                     replace = _castInt(arrayAccess);
-                } else if (GenerateHelper.isDoubleArrayType(_getInputType(origin)) && GenerateHelper.shouldCastDoubleToLong(target)) {
+                } else if (GenerateHelper.isDoubleArrayType(plan.getInputType()) && GenerateHelper.shouldCastDoubleToLong(target)) {
                     replace = _castLong(arrayAccess);
                 } else {
                     replace = arrayAccess;
@@ -247,7 +251,52 @@ public class GenerateEngine {
         return;
     }
 
+    /**
+     * Replace each input and expected with a field of the typed Fixture, e.g., "fixture._input0"
+     */
+    protected void _modifyTestMethodWithTypedFixture() {
+        _replaceWithTypedFields(plan.getExpectedRelatedNodes(), plan.getExpectedKinds(), EXPECTED_VAR);
+        _replaceWithTypedFields(plan.getInputRelatedNodes(), plan.getInputKinds(), INPUT_VAR);
+    }
+
+    private void _replaceWithTypedFields(List<ASTNode> relatedNodes, List<TypeLattice.Kind> kinds, String var) {
+        for (int i = 0; i < relatedNodes.size(); i++) {
+            ASTNode target = relatedNodes.get(i);
+            FieldAccess fieldAccess = ast.newFieldAccess();
+            fieldAccess.setExpression(ast.newSimpleName(FIXTURE_NAME));
+            fieldAccess.setName(ast.newSimpleName(var + i));
+            TypeLattice.Kind kind = i < kinds.size() ? kinds.get(i) : TypeLattice.Kind.OBJECT;
+            TypeLattice.Kind targetKind = TypeLattice.classify(target);
+            Expression replace = fieldAccess;
+            if (kind == TypeLattice.Kind.OBJECT && targetKind != TypeLattice.Kind.OBJECT) {
+                // 型が混在する場合は元の型にキャストする
+                CastExpression castExpression = ast.newCastExpression();
+                castExpression.setExpression(fieldAccess);
+                castExpression.setType(TypeLattice.toType(ast, targetKind));
+                replace = castExpression;
+            } else if (kind == TypeLattice.Kind.OBJECT && GenerateHelper.canBeCasted(target)) {
+                replace = _castObject(fieldAccess, target);
+            } else if (kind == TypeLattice.Kind.DOUBLE && targetKind != kind && GenerateHelper.shouldCastDoubleToInt(target)) {
+                // doubleに広げられた値をintしか受け付けない箇所で使う場合
+                replace = _castInt(fieldAccess);
+            } else if (kind == TypeLattice.Kind.DOUBLE && targetKind != kind && GenerateHelper.shouldCastDoubleToLong(target)) {
+                replace = _castLong(fieldAccess);
+            }
+            if (ASTUtils.isNumberLiteralWithPrefixedMinus(target)) {
+                target = target.getParent();
+            }
+            if (target instanceof SimpleName) {
+                target = GenerateHelper.getRootName((Name) target);
+            }
+            rewrite.replace(target, replace, null);
+        }
+    }
+
     protected void createDataPoints(MethodDeclaration origin) {
+        if (typedFixture) {
+            createTypedDataPoints();
+            return;
+        }
         // private static String[] INPUT1 = { "foo1", "foo2" };
         // private static String[] EXPECTED1 = { "bar1", "bar2" };
         // private static String[] INPUT2 = { "foo3", "foo4" };
@@ -259,36 +308,15 @@ public class GenerateEngine {
         // };
         // を作る
 
-        List<MethodDeclaration> similarMethods = new ArrayList<>();
-        List<ASTNode> mostDifferentNodes = null;
-        // 共通部分が一番少ないメソッドを探す && similarなメソッドを集める
-        for (TestCase testCase : testSuite.getTestCases()) {
-            MethodDeclaration method = testCase.getMethodDeclaration();
-            if (Detector.similarAST(origin, method)) {
-                similarMethods.add(method);
-                if (mostDifferentNodes == null) {
-                    mostDifferentNodes = ASTUtils.getDifferentNodes(method, origin);
-                } else if (mostDifferentNodes.size() < ASTUtils.getDifferentNodes(origin, method).size()) {
-                    mostDifferentNodes = ASTUtils.getDifferentNodes(method, origin);
-                }
-            }
-        }
-
+        List<MethodDeclaration> similarMethods = plan.getSimilarMethods();
         // originのnodeをinputとexpectedに分ける
-        List<ASTNode> inputRelatedNodes = new ArrayList<>();
-        List<ASTNode> expectedRelatedNodes = new ArrayList<>();
-        for (ASTNode node : mostDifferentNodes) {
-            if (GenerateHelper.isInExpectedDeclaringNode(origin, node)) {
-                expectedRelatedNodes.add(node);
-            } else {
-                inputRelatedNodes.add(node);
-            }
-        }
+        List<ASTNode> inputRelatedNodes = plan.getInputRelatedNodesForDataPoints();
+        List<ASTNode> expectedRelatedNodes = plan.getExpectedRelatedNodesForDataPoints();
         // 各テストメソッドからinputとexpectedを抜き出して追加する
-        List<ASTNode> originNodes = ASTUtils.flattenMinusNumberLiteral(ASTUtils.getAllNodes(origin));
+        List<ASTNode> originNodes = testSuite.getNodes(origin);
         for (int i = 0; i < similarMethods.size(); i++) {
             MethodDeclaration similarMethod = similarMethods.get(i);
-            List<ASTNode> methodNodes = ASTUtils.flattenMinusNumberLiteral(ASTUtils.getAllNodes(similarMethod));
+            List<ASTNode> methodNodes = testSuite.getNodes(similarMethod);
             List<ASTNode> inputs = new ArrayList<>();
             List<ASTNode> expecteds = new ArrayList<>();
             for (int j = 0; j < originNodes.size(); j++) {
@@ -316,7 +344,7 @@ public class GenerateEngine {
                 inputFragment.setInitializer(inputArray);
             }
             VariableDeclarationStatement inputStatement = ast.newVariableDeclarationStatement(inputFragment);
-            inputStatement.setType(_getInputType(origin));
+            inputStatement.setType(plan.getInputType());
             inputStatement.modifiers().add(ASTUtils.getPrivateModifier(ast));
             inputStatement.modifiers().add(ASTUtils.getStaticModifier(ast));
 
@@ -337,7 +365,7 @@ public class GenerateEngine {
                 expectedFragment.setInitializer(expectedArray);
             }
             VariableDeclarationStatement expectedStatement = ast.newVariableDeclarationStatement(expectedFragment);
-            expectedStatement.setType(_getExpectedType(origin));
+            expectedStatement.setType(plan.getExpectedType());
             expectedStatement.modifiers().add(ASTUtils.getPrivateModifier(ast));
             expectedStatement.modifiers().add(ASTUtils.getStaticModifier(ast));
 
@@ -372,6 +400,52 @@ public class GenerateEngine {
         return;
     }
 
+    /**
+     * Create "@DataPoints public static Fixture[] DATA = { new Fixture(input0, input1, expected0), ... };"
+     */
+    protected void createTypedDataPoints() {
+        if (externalDataPoints) {
+            List<List<ASTNode>> rows = new ArrayList<>();
+            for (MethodDeclaration similarMethod : plan.getSimilarMethods()) {
+                List<ASTNode> row = new ArrayList<>(plan.getInputsForDataPoints(similarMethod));
+                row.addAll(plan.getExpectedsForDataPoints(similarMethod));
+                rows.add(row);
+            }
+            List<TypeLattice.Kind> kinds = new ArrayList<>(plan.getInputKinds());
+            kinds.addAll(plan.getExpectedKinds());
+            // 定数でない値がある場合はインラインで生成する
+            this.dataPoints = ExternalDataPoints.encode(rows, kinds);
+            if (this.dataPoints != null) {
+                ListRewrite listRewrite = rewrite.getListRewrite(getTargetType(), TypeDeclaration.BODY_DECLARATIONS_PROPERTY);
+                listRewrite.insertLast(ExternalDataPoints.createDataPointsMethod(ast, FIXTURE_CLASS, kinds), null);
+                return;
+            }
+        }
+        ArrayInitializer dataPointArray = ast.newArrayInitializer();
+        ListRewrite dataPointListRewrite = rewrite.getListRewrite(dataPointArray, ArrayInitializer.EXPRESSIONS_PROPERTY);
+        for (MethodDeclaration similarMethod : plan.getSimilarMethods()) {
+            ClassInstanceCreation classInstanceCreation = ast.newClassInstanceCreation();
+            classInstanceCreation.setType(ast.newSimpleType(ast.newName(FIXTURE_CLASS)));
+            for (ASTNode input : plan.getInputsForDataPoints(similarMethod)) {
+                classInstanceCreation.arguments().add(ASTNode.copySubtree(ast, input));
+            }
+            for (ASTNode expected : plan.getExpectedsForDataPoints(similarMethod)) {
+                classInstanceCreation.arguments().add(ASTNode.copySubtree(ast, expected));
+            }
+            dataPointListRewrite.insertLast(classInstanceCreation, null);
+        }
+        VariableDeclarationFragment dataPointsFragment = ast.newVariableDeclarationFragment();
+        dataPointsFragment.setName(ast.newSimpleName("DATA"));
+        dataPointsFragment.setInitializer(dataPointArray);
+        VariableDeclarationStatement dataPointStatement = ast.newVariableDeclarationStatement(dataPointsFragment);
+        dataPointStatement.setType(ast.newArrayType(ast.newSimpleType(ast.newName(FIXTURE_CLASS))));
+        dataPointStatement.modifiers().add(ASTUtils.getDataPointsAnnotation(ast));
+        dataPointStatement.modifiers().add(ASTUtils.getPublicModifier(ast));
+        dataPointStatement.modifiers().add(ASTUtils.getStaticModifier(ast));
+        ListRewrite listRewrite = rewrite.getListRewrite(getTargetType(), TypeDeclaration.BODY_DECLARATIONS_PROPERTY);
+        listRewrite.insertLast(dataPointStatement, null);
+    }
+
     protected void deleteOtherTestMethods(MethodDeclaration origin) {
         TypeDeclaration modified = getTargetType();
         ListRewrite listRewrite = rewrite.getListRewrite(modified, TypeDeclaration.BODY_DECLARATIONS_PROPERTY);
@@ -436,11 +510,21 @@ public class GenerateEngine {
         if (fixtureClass == null) {
             target = getTargetType();
         }
+        ListRewrite bodyDeclarationsListRewrite = rewrite.getListRewrite(target, TypeDeclaration.BODY_DECLARATIONS_PROPERTY);
+        if (typedFixture) {
+            // inputとexpectedごとにフィールド変数定義を追加
+            for (int i = 0; i < plan.getInputKinds().size(); i++) {
+                bodyDeclarationsListRewrite.insertLast(createFieldDeclaration(TypeLattice.toType(ast, plan.getInputKinds().get(i)), INPUT_VAR + i), null);
+            }
+            for (int i = 0; i < plan.getExpectedKinds().size(); i++) {
+                bodyDeclarationsListRewrite.insertLast(createFieldDeclaration(TypeLattice.toType(ast, plan.getExpectedKinds().get(i)), EXPECTED_VAR + i), null);
+            }
+            return;
+        }
         // フィールド変数定義を生成
-        FieldDeclaration inputDeclaration = createFieldDeclaration(_getInputType(origin), INPUT_VAR);
-        FieldDeclaration expectedDeclaration = createFieldDeclaration(_getExpectedType(origin), EXPECTED_VAR);
+        FieldDeclaration inputDeclaration = createFieldDeclaration(plan.getInputType(), INPUT_VAR);
+        FieldDeclaration expectedDeclaration = createFieldDeclaration(plan.getExpectedType(), EXPECTED_VAR);
         // フィールド変数定義を追加
-        ListRewrite bodyDeclarationsListRewrite = rewrite.getListRewrite(target, TypeDeclaration.BODY_DECLARATIONS_PROPERTY);
         bodyDeclarationsListRewrite.insertLast(inputDeclaration, null);
         bodyDeclarationsListRewrite.insertLast(expectedDeclaration, null);
     }
@@ -466,14 +550,20 @@ public class GenerateEngine {
         ListRewrite modifiersListRewrite = rewrite.getListRewrite(constructor, MethodDeclaration.MODIFIERS2_PROPERTY);
         // public修飾子を付与
         modifiersListRewrite.insertLast(ASTUtils.getPublicModifier(ast), null);
+        if (typedFixture) {
+            _setTypedConstructorParameters(constructor);
+            ListRewrite bodyRewrite = rewrite.getListRewrite(target, TypeDeclaration.BODY_DECLARATIONS_PROPERTY);
+            bodyRewrite.insertLast(constructor, null);
+            return;
+        }
         // 引数を設定
         // inputの型と名前を設定
         SingleVariableDeclaration input = ast.newSingleVariableDeclaration();
-        input.setType(_getInputType(origin));
+        input.setType(plan.getInputType());
         input.setName(ast.newSimpleName(INPUT_VAR));
         // expectedの型と名前を設定
         SingleVariableDeclaration expected = ast.newSingleVariableDeclaration();
-        expected.setType(_getExpectedType(origin));
+        expected.setType(plan.getExpectedType());
         expected.setName(ast.newSimpleName(EXPECTED_VAR));
         // 引数を追加
         ListRewrite parametersListRewrite = rewrite.getListRewrite(constructor, MethodDeclaration.PARAMETERS_PROPERTY);
@@ -492,6 +582,33 @@ public class GenerateEngine {
         bodyRewrite.insertLast(constructor, null);
     }
 
+    /**
+     * Set a parameter and "this.var = var;" for each input and expected to the constructor of the typed Fixture
+     */
+    private void _setTypedConstructorParameters(MethodDeclaration constructor) {
+        List<String> vars = new ArrayList<>();
+        List<TypeLattice.Kind> kinds = new ArrayList<>();
+        for (int i = 0; i < plan.getInputKinds().size(); i++) {
+            vars.add(INPUT_VAR + i);
+            kinds.add(plan.getInputKinds().get(i));
+        }
+        for (int i = 0; i < plan.getExpectedKinds().size(); i++) {
+            vars.add(EXPECTED_VAR + i);
+            kinds.add(plan.getExpectedKinds().get(i));
+        }
+        ListRewrite parametersListRewrite = rewrite.getListRewrite(constructor, MethodDeclaration.PARAMETERS_PROPERTY);
+        Block body = ast.newBlock();
+        ListRewrite bodyListRewrite = rewrite.getListRewrite(body, Block.STATEMENTS_PROPERTY);
+        for (int i = 0; i < vars.size(); i++) {
+            SingleVariableDeclaration parameter = ast.newSingleVariableDeclaration();
+            parameter.setType(TypeLattice.toType(ast, kinds.get(i)));
+            parameter.setName(ast.newSimpleName(vars.get(i)));
+            parametersListRewrite.insertLast(parameter, null);
+            bodyListRewrite.insertLast(createConstructorBlockAssignment(vars.get(i)), null);
+        }
+        constructor.setBody(body);
+    }
+
     protected ExpressionStatement createConstructorBlockAssignment(String var) {
         // "this.var = var;" を生成
         Assignment assignment = ast.newAssignment();
@@ -525,150 +642,6 @@ public class GenerateEngine {
     }
 
     /* --------------------- helper -------------------------------------- */
-    private Type _getExpectedType(MethodDeclaration origin) {
-        List<ASTNode> mostDifferentNodes = null;
-        // 共通部分が一番少ないメソッドを探す
-        for (TestCase testCase : testSuite.getTestCases()) {
-            MethodDeclaration method = testCase.getMethodDeclaration();
-            if (method.equals(origin)) {
-                continue;
-            }
-            if (Detector.similarAST(origin, method)) {
-                if (mostDifferentNodes == null) {
-                    mostDifferentNodes = ASTUtils.getDifferentNodes(method, origin);
-                } else if (mostDifferentNodes.size() < ASTUtils.getDifferentNodes(origin, method).size()) {
-                    mostDifferentNodes = ASTUtils.getDifferentNodes(method, origin);
-                }
-            }
-        }
-        // commonじゃないnodeからinputを抽出する
-        List<ASTNode> expectedRelatedNodes = new ArrayList<>();
-        for (ASTNode node : mostDifferentNodes) {
-            if (GenerateHelper.isInExpectedDeclaringNode(origin, node)) {
-                expectedRelatedNodes.add(node);
-            }
-        }
-        Type ret;
-        if (1 < expectedRelatedNodes.size()) {
-            ret = ast.newArrayType(ast.newSimpleType(ast.newName("Object")));
-            if (ASTUtils.allStringType(expectedRelatedNodes)) {
-                ret = ast.newArrayType(ast.newSimpleType(ast.newName("String")));
-            } else if (ASTUtils.allByteType(expectedRelatedNodes)) {
-                ret = ast.newArrayType(ast.newPrimitiveType(PrimitiveType.BYTE));
-            } else if (ASTUtils.allShortType(expectedRelatedNodes)) {
-                ret = ast.newArrayType(ast.newPrimitiveType(PrimitiveType.SHORT));
-            } else if (ASTUtils.allIntType(expectedRelatedNodes)) {
-                ret = ast.newArrayType(ast.newPrimitiveType(PrimitiveType.INT));
-            } else if (ASTUtils.allLongType(expectedRelatedNodes)) {
-                ret = ast.newArrayType(ast.newPrimitiveType(PrimitiveType.LONG));
-            } else if (ASTUtils.allFloatType(expectedRelatedNodes)) {
-                ret = ast.newArrayType(ast.newPrimitiveType(PrimitiveType.FLOAT));
-            } else if (ASTUtils.allDoubleType(expectedRelatedNodes)) {
-                ret = ast.newArrayType(ast.newPrimitiveType(PrimitiveType.DOUBLE));
-            } else if (ASTUtils.allCharacterType(expectedRelatedNodes)) {
-                ret = ast.newArrayType(ast.newPrimitiveType(PrimitiveType.CHAR));
-            } else if (ASTUtils.allBooleanType(expectedRelatedNodes)) {
-                ret = ast.newArrayType(ast.newPrimitiveType(PrimitiveType.BOOLEAN));
-            }
-        } else {
-            ret = ast.newSimpleType(ast.newName("Object"));
-            if (ASTUtils.allStringType(expectedRelatedNodes)) {
-                ret = ast.newSimpleType(ast.newName("String"));
-            } else if (ASTUtils.allByteType(expectedRelatedNodes)) {
-                ret = ast.newPrimitiveType(PrimitiveType.BYTE);
-            } else if (ASTUtils.allShortType(expectedRelatedNodes)) {
-                ret = ast.newPrimitiveType(PrimitiveType.SHORT);
-            } else if (ASTUtils.allIntType(expectedRelatedNodes)) {
-                ret = ast.newPrimitiveType(PrimitiveType.INT);
-            } else if (ASTUtils.allLongType(expectedRelatedNodes)) {
-                ret = ast.newPrimitiveType(PrimitiveType.LONG);
-            } else if (ASTUtils.allFloatType(expectedRelatedNodes)) {
-                ret = ast.newPrimitiveType(PrimitiveType.FLOAT);
-            } else if (ASTUtils.allDoubleType(expectedRelatedNodes)) {
-                ret = ast.newPrimitiveType(PrimitiveType.DOUBLE);
-            } else if (ASTUtils.allCharacterType(expectedRelatedNodes)) {
-                ret = ast.newPrimitiveType(PrimitiveType.CHAR);
-            } else if (ASTUtils.allBooleanType(expectedRelatedNodes)) {
-                ret = ast.newPrimitiveType(PrimitiveType.BOOLEAN);
-            }
-        }
-        return ret;
-    }
-
-    private Type _getInputType(MethodDeclaration origin) {
-        List<ASTNode> mostDifferentNodesInOrigin = null;
-        List<List<ASTNode>> similarMethodNodes = new ArrayList<>();
-        List<ASTNode> mostDifferentNodesFromAnother = null;
-        // 共通部分が一番少ないメソッドを探す
-        for (TestCase testCase : testSuite.getTestCases()) {
-            MethodDeclaration method = testCase.getMethodDeclaration();
-            if (method.equals(origin)) {
-                continue;
-            }
-            if (Detector.similarAST(origin, method)) {
-                if (mostDifferentNodesInOrigin == null) {
-                    mostDifferentNodesInOrigin = ASTUtils.getDifferentNodes(method, origin);
-                    mostDifferentNodesFromAnother = ASTUtils.getDifferentNodes(origin, method);
-                } else if (mostDifferentNodesInOrigin.size() <= ASTUtils.getDifferentNodes(origin, method).size()) {
-                    mostDifferentNodesInOrigin = ASTUtils.getDifferentNodes(method, origin);
-                    mostDifferentNodesFromAnother = ASTUtils.getDifferentNodes(origin, method);
-                }
-            }
-        }
-        // commonじゃないnodeからinputを抽出する
-        List<ASTNode> inputRelatedNodesInOrigin = new ArrayList<>();
-        for (ASTNode node : mostDifferentNodesInOrigin) {
-            if (!GenerateHelper.isInExpectedDeclaringNode(origin, node)) {
-                inputRelatedNodesInOrigin.add(node);
-            }
-        }
-        Type ret;
-        Type commonTypeInOrigin = _getCommonType(inputRelatedNodesInOrigin);
-        ret = commonTypeInOrigin;
-        if (commonTypeInOrigin instanceof ArrayType) {
-            ArrayType arrayType = (ArrayType) commonTypeInOrigin;
-            if (arrayType.getElementType() instanceof PrimitiveType) {
-                PrimitiveType primitiveType = (PrimitiveType) arrayType.getElementType();
-                if (primitiveType.getPrimitiveTypeCode() == PrimitiveType.INT) {
-                    List<ASTNode> inputRelatedNodesFromAnother = new ArrayList<>();
-                    for (ASTNode node : mostDifferentNodesFromAnother) {
-                        if (!GenerateHelper.isInExpectedDeclaringNode(origin, node)) {
-                            inputRelatedNodesFromAnother.add(node);
-                        }
-                    }
-                    Type commonTypeFromAother = _getCommonType(inputRelatedNodesFromAnother);
-                    if (commonTypeFromAother instanceof ArrayType) {
-                        ArrayType arrayType1 = (ArrayType) commonTypeFromAother;
-                        if (arrayType1.getElementType() instanceof PrimitiveType) {
-                            PrimitiveType primitiveType1 = (PrimitiveType) arrayType1.getElementType();
-                            if (primitiveType1.getPrimitiveTypeCode() == PrimitiveType.DOUBLE) {
-                                ret = commonTypeFromAother;
-                            }
-                        }
-                    }
-                }
-            }
-        } else if (commonTypeInOrigin instanceof PrimitiveType) {
-            PrimitiveType primitiveType = (PrimitiveType) commonTypeInOrigin;
-            if (primitiveType.getPrimitiveTypeCode().equals(PrimitiveType.INT)) {
-                List<ASTNode> inputRelatedNodesFromAnother = new ArrayList<>();
-                for (ASTNode node : mostDifferentNodesFromAnother) {
-                    if (!GenerateHelper.isInExpectedDeclaringNode(origin, node)) {
-                        inputRelatedNodesFromAnother.add(node);
-                    }
-                }
-                Type commonTypeFromAother = _getCommonType(inputRelatedNodesFromAnother);
-                if (commonTypeFromAother instanceof PrimitiveType) {
-                    PrimitiveType primitiveType1 = (PrimitiveType) commonTypeFromAother;
-                    if (primitiveType1.getPrimitiveTypeCode() == PrimitiveType.DOUBLE) {
-                        ret = commonTypeFromAother;
-                    }
-                }
-            }
-        }
-        return ret;
-    }
-
     private MethodInvocation _convertObjectToPrimitiveWrapper(Expression expression, String type) {
         MethodInvocation methodInvocation = ast.newMethodInvocation();
         methodInvocation.setExpression(expression);
@@ -722,54 +695,6 @@ public class GenerateEngine {
         return castExpression;
     }
 
-    private Type _getCommonType(List<ASTNode> nodes) {
-        Type ret;
-        if (1 < nodes.size()) {
-            ret = ast.newArrayType(ast.newSimpleType(ast.newName("Object")));
-            if (ASTUtils.allStringType(nodes)) {
-                ret = ast.newArrayType(ast.newSimpleType(ast.newName("String")));
-            } else if (ASTUtils.allByteType(nodes)) {
-                ret = ast.newArrayType(ast.newPrimitiveType(PrimitiveType.BYTE));
-            } else if (ASTUtils.allShortType(nodes)) {
-                ret = ast.newArrayType(ast.newPrimitiveType(PrimitiveType.SHORT));
-            } else if (ASTUtils.allIntType(nodes)) {
-                ret = ast.newArrayType(ast.newPrimitiveType(PrimitiveType.INT));
-            } else if (ASTUtils.allLongType(nodes)) {
-                ret = ast.newArrayType(ast.newPrimitiveType(PrimitiveType.LONG));
-            } else if (ASTUtils.allFloatType(nodes)) {
-                ret = ast.newArrayType(ast.newPrimitiveType(PrimitiveType.FLOAT));
-            } else if (ASTUtils.allDoubleType(nodes)) {
-                ret = ast.newArrayType(ast.newPrimitiveType(PrimitiveType.DOUBLE));
-            } else if (ASTUtils.allCharacterType(nodes)) {
-                ret = ast.newArrayType(ast.newPrimitiveType(PrimitiveType.CHAR));
-            } else if (ASTUtils.allBooleanType(nodes)) {
-                ret = ast.newArrayType(ast.newPrimitiveType(PrimitiveType.BOOLEAN));
-            }
-        } else {
-            ret = ast.newSimpleType(ast.newName("Object"));
-            if (ASTUtils.allStringType(nodes)) {
-                ret = ast.newSimpleType(ast.newName("String"));
-            } else if (ASTUtils.allByteType(nodes)) {
-                ret = ast.newPrimitiveType(PrimitiveType.BYTE);
-            } else if (ASTUtils.allShortType(nodes)) {
-                ret = ast.newPrimitiveType(PrimitiveType.SHORT);
-            } else if (ASTUtils.allIntType(nodes)) {
-                ret = ast.newPrimitiveType(PrimitiveType.INT);
-            } else if (ASTUtils.allLongType(nodes)) {
-                ret = ast.newPrimitiveType(PrimitiveType.LONG);
-            } else if (ASTUtils.allFloatType(nodes)) {
-                ret = ast.newPrimitiveType(PrimitiveType.FLOAT);
-            } else if (ASTUtils.allDoubleType(nodes)) {
-                ret = ast.newPrimitiveType(PrimitiveType.DOUBLE);
-            } else if (ASTUtils.allCharacterType(nodes)) {
-                ret = ast.newPrimitiveType(PrimitiveType.CHAR);
-            } else if (ASTUtils.allBooleanType(nodes)) {
-                ret = ast.newPrimitiveType(PrimitiveType.BOOLEAN);
-            }
-        }
-        return ret;
-    }
-
     protected TypeDeclaration getTargetType() {
         TypeDeclaration target = null;
         for (AbstractTypeDeclaration abstType : (List<AbstractTypeDeclaration>) getCompilationUnit().types()) {
@@ -790,6 +715,8 @@ public class GenerateEngine {
         cu = getCompilationUnit();
         ast = cu.getAST();
         rewrite = ASTRewrite.create(ast);
+        plan = new ParameterizationPlan(testSuite, method, ast);
+        dataPoints = null;
         // テストメソッドを作成(既存のテストメソッドを修正する)
         modifyTestMethod(method);
         // data-pointsを作成
@@ -815,6 +742,7 @@ public class GenerateEngine {
         this.cu = null;
         this.ast = null;
         this.rewrite = null;
+        this.plan = null;
         return content;
     }
 
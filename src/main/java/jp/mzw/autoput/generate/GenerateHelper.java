@@ -3,8 +3,6 @@ package jp.mzw.autoput.generate;
 import jp.mzw.autoput.ast.ASTUtils;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.ArrayType;
-import org.eclipse.jdt.core.dom.BooleanLiteral;
-import org.eclipse.jdt.core.dom.CharacterLiteral;
 import org.eclipse.jdt.core.dom.ClassInstanceCreation;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.Expression;
@@ -13,93 +11,47 @@ import org.eclipse.jdt.core.dom.ITypeBinding;
 import org.eclipse.jdt.core.dom.MethodDeclaration;
 import org.eclipse.jdt.core.dom.MethodInvocation;
 import org.eclipse.jdt.core.dom.Name;
-import org.eclipse.jdt.core.dom.NumberLiteral;
 import org.eclipse.jdt.core.dom.PrimitiveType;
-import org.eclipse.jdt.core.dom.SimpleName;
 import org.eclipse.jdt.core.dom.SimpleType;
-import org.eclipse.jdt.core.dom.StringLiteral;
 import org.eclipse.jdt.core.dom.Type;
 
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 class GenerateHelper {
 
-    protected static List<ASTNode> getParameterNodes(ASTNode src, ASTNode dst) {
-        List<ASTNode> ret = new ArrayList<>();
-        List<ASTNode> nodes1 = ASTUtils.flattenMinusNumberLiteral(ASTUtils.getAllNodes(src));
-        List<ASTNode> nodes2 = ASTUtils.flattenMinusNumberLiteral(ASTUtils.getAllNodes(dst));
-        if (nodes1.size() != nodes2.size()) {
-            return ret;
-        }
-        for (int i = 0; i < nodes1.size(); i++) {
-            ASTNode node1 = nodes1.get(i);
-            ASTNode node2 = nodes2.get(i);
-            if (node1 instanceof BooleanLiteral) {
-                BooleanLiteral booleanLiteral1 = (BooleanLiteral) node1;
-                BooleanLiteral booleanLiteral2 = (BooleanLiteral) node2;
-                if (booleanLiteral1.booleanValue() != booleanLiteral2.booleanValue()) {
-                    ret.add(node2);
-                }
-            } else if (node1 instanceof CharacterLiteral) {
-                CharacterLiteral characterLiteral1 = (CharacterLiteral) node1;
-                CharacterLiteral characterLiteral2 = (CharacterLiteral) node2;
-                if (characterLiteral1.charValue() != characterLiteral2.charValue()) {
-                    ret.add(node2);
-                }
-            } else if (node1 instanceof NumberLiteral) {
-                NumberLiteral numberLiteral1 = (NumberLiteral) node1;
-                NumberLiteral numberLiteral2 = (NumberLiteral) node2;
-                if (!numberLiteral1.getToken().equals(numberLiteral2.getToken())) {
-                    ret.add(node2);
-                }
-            } else if (node1 instanceof StringLiteral) {
-                StringLiteral stringLiteral1 = (StringLiteral) node1;
-                StringLiteral stringLiteral2 = (StringLiteral) node2;
-                if (!stringLiteral1.getLiteralValue().equals(stringLiteral2.getLiteralValue())) {
-                    ret.add(node2);
-                }
-            } else if (node1 instanceof SimpleName) {
-                SimpleName simpleName1 = (SimpleName) node1;
-                SimpleName simpleName2 = (SimpleName) node2;
-                if (ASTUtils.canExtract(simpleName1) && ASTUtils.canExtract(simpleName2)
-                        && simpleName1.resolveTypeBinding().getName().equals(simpleName2.resolveBinding().getName())
-                        && ASTUtils.isConst(simpleName1) && ASTUtils.isConst(simpleName1)) {
-                    ret.add(node2);
-                }
-            }
-        }
-        return ret;
-    }
-
-    protected static boolean isInExpectedDeclaringNode(MethodDeclaration origin, ASTNode node) {
+    /**
+     * Collect nodes regarded as expected values in one pass over assertions of the origin:
+     * literal expected values, and nodes under the declaration of a named expected value.
+     * Assertions after the first declaration found are not looked at.
+     *
+     * @return identity set of nodes
+     */
+    protected static Set<ASTNode> getExpectedNodes(MethodDeclaration origin) {
+        Set<ASTNode> ret = Collections.newSetFromMap(new IdentityHashMap<>());
         List<MethodInvocation> assertions = ASTUtils.getAllAssertions(origin);
         for (MethodInvocation assertion : assertions) {
             Expression expected;
-            ASTNode expectedDeclaringNode = null;
             if (assertion.arguments().size() == 2) {
                 expected = (Expression) assertion.arguments().get(0);
-                if (ASTUtils.isLiteralNode(expected) && expected.equals(node)) {
-                    return true;
-                } else if (expected instanceof Name) {
-                    expectedDeclaringNode = ((CompilationUnit) origin.getRoot()).findDeclaringNode(((Name) expected).resolveBinding());
-                }
             } else if (assertion.arguments().size() == 3) {
                 expected = (Expression) assertion.arguments().get(1);
-                if (ASTUtils.isLiteralNode(expected) && expected.equals(node)) {
-                    return true;
-                } else if (expected instanceof Name) {
-                    expectedDeclaringNode = ((CompilationUnit) origin.getRoot()).findDeclaringNode(((Name) expected).resolveBinding());
+            } else {
+                continue;
+            }
+            if (ASTUtils.isLiteralNode(expected)) {
+                ret.add(expected);
+            } else if (expected instanceof Name) {
+                ASTNode expectedDeclaringNode = ((CompilationUnit) origin.getRoot()).findDeclaringNode(((Name) expected).resolveBinding());
+                if (expectedDeclaringNode != null) {
+                    ret.addAll(ASTUtils.getAllNodes(expectedDeclaringNode));
+                    break;
                 }
             }
-            while (expectedDeclaringNode != null && node != null) {
-                if (node.equals(expectedDeclaringNode)) {
-                    return true;
-                }
-                node = node.getParent();
-            }
         }
-        return false;
+        return ret;
     }
 
     protected static Name getRootName(Name name) {
@@ -10,11 +10,22 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class Generator {
@@ -33,45 +44,209 @@ public class Generator {
     public void generate() {
         // Load detection results. Then, generate PUT candidates.
         List<CSVRecord> records = detector.getDetectResults();
+        if (1 < project.getGenerateParallelism()) {
+            _generateInParallel(records);
+            return;
+        }
+        // Parse once and look up test suites and test cases by names
+        Map<String, List<TestSuite>> testSuites = _indexTestSuites(project.getParsedTestSuites());
+        Map<TestSuite, Map<String, TestCase>> testCases = new HashMap<>();
         for (CSVRecord record : records) {
             String packageName = record.get(0);
             String testSuiteName = record.get(1);
             String testCaseName  = record.get(2);
 
-
-            for (TestSuite testSuite : detector.getTestSuites()) {
-                if (!testSuite.getTestClassName().equals(testSuiteName)) {
+            for (TestSuite testSuite : testSuites.getOrDefault(_getKey(packageName, testSuiteName), new ArrayList<>())) {
+                TestCase testCase = testCases.computeIfAbsent(testSuite, Generator::_indexTestCases).get(testCaseName);
+                if (testCase == null) {
                     continue;
                 }
-                if (!testSuite.getCu().getPackage().getName().toString().equals(packageName)) {
-                    continue;
+                Output output = _generate(testSuite, testCase, record);
+                if (output != null) {
+                    _output(packageName, testSuiteName, testCaseName, output);
                 }
-                for (TestCase testCase : testSuite.getTestCases()) {
-                    if (testCase.getName().equals(testCaseName)) {
-                        try {
-                            String content = new GenerateEngine(testSuite).generatePUT(testCase.getMethodDeclaration());
-                            _outputPUT(packageName, testSuiteName, testCaseName, content);
-                        } catch (NullPointerException e) {
-                            System.err.println("NullPo At " + testSuiteName + "_" + testCaseName + " when generating PUT");
-                            e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Generate PUTs of different test suites in parallel.
+     * Records are grouped by test suite, and each worker parses its test files by itself
+     * because JDT ASTs are not thread-safe. Outputs are written in the order of records,
+     * and nothing is written if any worker fails.
+     */
+    private void _generateInParallel(List<CSVRecord> records) {
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < records.size(); i++) {
+            groups.computeIfAbsent(_getKey(records.get(i).get(0), records.get(i).get(1)), key -> new ArrayList<>()).add(i);
+        }
+        // Test files are found by names without parsing the subject
+        Map<String, List<File>> testFiles = _indexTestFiles(Project.getTestFiles(project.getProjectDir()));
+        // PUT and original CUTs for each record
+        Map<Integer, List<Output>> outputs = new ConcurrentHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(project.getGenerateParallelism());
+        List<Future<?>> futures = new ArrayList<>();
+        for (Map.Entry<String, List<Integer>> group : groups.entrySet()) {
+            String packageName = records.get(group.getValue().get(0)).get(0);
+            String className = records.get(group.getValue().get(0)).get(1);
+            futures.add(executor.submit(() -> {
+                for (File testFile : _findTestFiles(testFiles, packageName, className)) {
+                    TestSuite testSuite = project.parseTestSuite(testFile);
+                    // パッケージ宣言はパースするまでわからない
+                    if (testSuite == null || !testSuite.getPackageName().equals(packageName)) {
+                        continue;
+                    }
+                    Map<String, TestCase> testCases = _indexTestCases(testSuite);
+                    for (int i : group.getValue()) {
+                        CSVRecord record = records.get(i);
+                        TestCase testCase = testCases.get(record.get(2));
+                        if (testCase == null) {
                             continue;
                         }
-                        List<String> similarCUTs = new ArrayList<>();
-                        for (int j = 3; j < record.size(); j++) {
-                            similarCUTs.add(record.get(j));
-                        }
-                        try {
-                            String content = new GenerateEngine(testSuite).extractOriginalCUTs(testCase.getMethodDeclaration(), similarCUTs);
-                            _outputOriginalCUTs(packageName, testSuiteName, testCaseName, content);
-                        } catch (NullPointerException e) {
-                            System.err.println("NullPo At " + testSuiteName + "_" + testCaseName + " when extracting original CUTs");
-                            e.printStackTrace();
+                        Output output = _generate(testSuite, testCase, record);
+                        if (output != null) {
+                            outputs.computeIfAbsent(i, key -> new ArrayList<>()).add(output);
                         }
-                        break;
                     }
                 }
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while generating in parallel", e);
+        } catch (ExecutionException e) {
+            // 直列の場合と同様に例外を伝播させ, 一部のPUTのみを出力しない
+            LOGGER.error("Fail to generate in parallel: {}", e.getCause().getMessage());
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (int i = 0; i < records.size(); i++) {
+            CSVRecord record = records.get(i);
+            for (Output output : outputs.getOrDefault(i, new ArrayList<>())) {
+                _output(record.get(0), record.get(1), record.get(2), output);
+            }
+        }
+    }
+
+    /**
+     * PUT and original CUTs generated from a test case
+     */
+    private static class Output {
+        private final String put;
+        /** Data points deployed next to PUT, or null if inlined */
+        private final byte[] dataPoints;
+        /** Original CUTs, or null if failed */
+        private final String originalCUTs;
+
+        private Output(String put, byte[] dataPoints, String originalCUTs) {
+            this.put = put;
+            this.dataPoints = dataPoints;
+            this.originalCUTs = originalCUTs;
+        }
+    }
+
+    /**
+     * @return generated PUT and original CUTs, or null if failed to generate PUT
+     */
+    private Output _generate(TestSuite testSuite, TestCase testCase, CSVRecord record) {
+        GenerateEngine engine = new GenerateEngine(testSuite, project.isTypedFixture(), project.isExternalDataPoints());
+        String put;
+        try {
+            put = engine.generatePUT(testCase.getMethodDeclaration());
+        } catch (NullPointerException e) {
+            System.err.println("NullPo At " + testSuite.getTestClassName() + "_" + testCase.getName() + " when generating PUT");
+            e.printStackTrace();
+            return null;
+        }
+        return new Output(put, engine.getDataPoints(), _extractOriginalCUTs(testSuite, testCase, record));
+    }
+
+    private void _output(String packageName, String className, String methodName, Output output) {
+        _outputPUT(packageName, className, methodName, output.put);
+        _outputDataPoints(packageName, className, methodName, output.dataPoints);
+        if (output.originalCUTs != null) {
+            _outputOriginalCUTs(packageName, className, methodName, output.originalCUTs);
+        }
+    }
+
+    /**
+     * @return original CUTs similar to the given test case, or null if failed
+     */
+    private String _extractOriginalCUTs(TestSuite testSuite, TestCase testCase, CSVRecord record) {
+        List<String> similarCUTs = new ArrayList<>();
+        for (int j = 3; j < record.size(); j++) {
+            similarCUTs.add(record.get(j));
+        }
+        try {
+            return new GenerateEngine(testSuite).extractOriginalCUTs(testCase.getMethodDeclaration(), similarCUTs);
+        } catch (NullPointerException e) {
+            System.err.println("NullPo At " + testSuite.getTestClassName() + "_" + testCase.getName() + " when extracting original CUTs");
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static Map<String, List<TestSuite>> _indexTestSuites(List<TestSuite> testSuites) {
+        Map<String, List<TestSuite>> ret = new HashMap<>();
+        for (TestSuite testSuite : testSuites) {
+            ret.computeIfAbsent(_getKey(testSuite.getPackageName(), testSuite.getTestClassName()), key -> new ArrayList<>()).add(testSuite);
+        }
+        return ret;
+    }
+
+    /**
+     * Index test files by class names, i.e., file names without the extension
+     */
+    private static Map<String, List<File>> _indexTestFiles(String[] testFiles) {
+        Map<String, List<File>> ret = new HashMap<>();
+        for (String testFile : testFiles) {
+            File file = new File(testFile);
+            if (file.getName().endsWith(".java")) {
+                ret.computeIfAbsent(file.getName().substring(0, file.getName().length() - ".java".length()), key -> new ArrayList<>()).add(file);
             }
         }
+        return ret;
+    }
+
+    /**
+     * Find test files of the given test suite, which are those in the directory of the package if any,
+     * otherwise all files of the class name since the package declaration may not match the directory
+     */
+    private static List<File> _findTestFiles(Map<String, List<File>> testFiles, String packageName, String className) {
+        List<File> candidates = testFiles.getOrDefault(className, new ArrayList<>());
+        String suffix = File.separator + (packageName.isEmpty() ? "" : packageName.replace(".", File.separator) + File.separator) + className + ".java";
+        List<File> ret = candidates.stream().filter(file -> file.getPath().endsWith(suffix)).collect(Collectors.toList());
+        return ret.isEmpty() ? candidates : ret;
+    }
+
+    /**
+     * Index test cases by names, where the first one is used if names are duplicated
+     */
+    private static Map<String, TestCase> _indexTestCases(TestSuite testSuite) {
+        Map<String, TestCase> ret = new HashMap<>();
+        for (TestCase testCase : testSuite.getTestCases()) {
+            ret.putIfAbsent(testCase.getName(), testCase);
+        }
+        return ret;
+    }
+
+    private static String _getKey(String packageName, String className) {
+        return String.join(",", packageName, className);
     }
 
     public List<CSVRecord> getDetectResult() {
@@ -88,6 +263,22 @@ public class Generator {
         }
     }
 
+    /**
+     * @return data points read by PUT, or null if they are inlined in PUT
+     */
+    public byte[] getDataPoints(String packageName, String className, String methodName) {
+        Path path = Paths.get(_getPathToDataPoints(packageName, className, methodName));
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try {
+            return Files.readAllBytes(path);
+        } catch (IOException e) {
+            LOGGER.error(e.getMessage());
+            return null;
+        }
+    }
+
     public String getOriginalCUTs(String packageName, String className, String methodName) {
         try {
             return Files.lines(Paths.get(_getPathToOriginalCUTs(packageName, className, methodName)))
@@ -114,6 +305,22 @@ public class Generator {
         }
     }
 
+    /**
+     * Output data points next to PUT, or delete the previous ones if inlined
+     */
+    private void _outputDataPoints(String packageName, String className, String methodName, byte[] dataPoints) {
+        try {
+            if (dataPoints == null) {
+                Files.deleteIfExists(Paths.get(_getPathToDataPoints(packageName, className, methodName)));
+                return;
+            }
+            Files.createDirectories(Paths.get(_getPathToOutputDir(packageName, className, methodName)));
+            Files.write(Paths.get(_getPathToDataPoints(packageName, className, methodName)), dataPoints);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     private void _outputOriginalCUTs(String packageName, String className, String methodName, String content) {
         if (!Files.exists(Paths.get(_getPathToOriginalCUTs(packageName, className, methodName)))) {
             try {
@@ -134,6 +341,9 @@ public class Generator {
     private String _getPathToPUT(String packageName, String className, String methodName) {
         return String.join("/", _getPathToOutputDir(packageName, className, methodName), Main.PUT + ".java");
     }
+    private String _getPathToDataPoints(String packageName, String className, String methodName) {
+        return String.join("/", _getPathToOutputDir(packageName, className, methodName), Main.PUT + Main.DATA_POINTS);
+    }
     private String _getPathToOriginalCUTs(String packageName, String className, String methodName) {
         return String.join("/", _getPathToOutputDir(packageName, className, methodName), Main.CUT + ".java");
     }
@@ -0,0 +1,223 @@
+package jp.mzw.autoput.generate;
+
+import jp.mzw.autoput.ast.ASTUtils;
+import jp.mzw.autoput.ast.EncodedMethod;
+import jp.mzw.autoput.core.TestCase;
+import jp.mzw.autoput.core.TestSuite;
+import jp.mzw.autoput.detect.Detector;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.Type;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * How to parameterize an origin test method, computed once per origin:
+ * similar methods, nodes to be replaced with inputs and expecteds, and their types.
+ */
+class ParameterizationPlan {
+
+    protected AST ast;
+    protected TestSuite testSuite;
+    protected MethodDeclaration origin;
+    /** Nodes of the origin regarded as expected values */
+    protected Set<ASTNode> expectedNodes;
+
+    /** Methods similar to the origin in the order of the test suite, including the origin */
+    protected List<MethodDeclaration> similarMethods;
+
+    /** Nodes of the origin differing most from another similar method */
+    protected List<ASTNode> inputRelatedNodes;
+    protected List<ASTNode> expectedRelatedNodes;
+    /** Same as above, but the origin is also compared with itself in choosing the most different method */
+    protected List<ASTNode> inputRelatedNodesForDataPoints;
+    protected List<ASTNode> expectedRelatedNodesForDataPoints;
+
+    /** Types of input and expected, copied whenever used because a node can have only one parent */
+    protected Type inputType;
+    protected Type expectedType;
+    /** Type of each input and expected of data points joined over the similar methods, computed lazily */
+    protected List<TypeLattice.Kind> inputKinds;
+    protected List<TypeLattice.Kind> expectedKinds;
+
+    protected ParameterizationPlan(TestSuite testSuite, MethodDeclaration origin, AST ast) {
+        this.ast = ast;
+        this.testSuite = testSuite;
+        this.origin = origin;
+        this.similarMethods = new ArrayList<>();
+        this.expectedNodes = GenerateHelper.getExpectedNodes(origin);
+        EncodedMethod encoding = testSuite.getEncoding(origin);
+        List<ASTNode> originNodes = testSuite.getNodes(origin);
+        // 共通部分が一番少ないメソッドを探す
+        List<ASTNode> mostDifferentNodes = null;
+        List<ASTNode> mostDifferentNodesForDataPoints = null;
+        // The last one wins ties in inferring the input type
+        List<ASTNode> mostDifferentNodesInOrigin = null;
+        List<ASTNode> mostDifferentNodesFromAnother = null;
+        for (TestCase testCase : testSuite.getTestCases()) {
+            MethodDeclaration method = testCase.getMethodDeclaration();
+            if (!Detector.similarAST(encoding, testSuite.getEncoding(method))) {
+                continue;
+            }
+            similarMethods.add(method);
+            List<ASTNode> methodNodes = testSuite.getNodes(method);
+            List<ASTNode> inOrigin = ASTUtils.getDifferentNodes(methodNodes, originNodes);
+            List<ASTNode> fromAnother = ASTUtils.getDifferentNodes(originNodes, methodNodes);
+            if (mostDifferentNodesForDataPoints == null || mostDifferentNodesForDataPoints.size() < fromAnother.size()) {
+                mostDifferentNodesForDataPoints = inOrigin;
+            }
+            if (method.equals(origin)) {
+                continue;
+            }
+            if (mostDifferentNodes == null || mostDifferentNodes.size() < fromAnother.size()) {
+                mostDifferentNodes = inOrigin;
+            }
+            if (mostDifferentNodesInOrigin == null || mostDifferentNodesInOrigin.size() <= fromAnother.size()) {
+                mostDifferentNodesInOrigin = inOrigin;
+                mostDifferentNodesFromAnother = fromAnother;
+            }
+        }
+        // commonsじゃないnodeをinputとexpectedに分ける
+        this.inputRelatedNodes = new ArrayList<>();
+        this.expectedRelatedNodes = new ArrayList<>();
+        for (ASTNode node : mostDifferentNodes) {
+            if (expectedNodes.contains(node)) {
+                expectedRelatedNodes.add(node);
+            } else {
+                inputRelatedNodes.add(node);
+            }
+        }
+        this.inputRelatedNodesForDataPoints = new ArrayList<>();
+        this.expectedRelatedNodesForDataPoints = new ArrayList<>();
+        for (ASTNode node : mostDifferentNodesForDataPoints) {
+            if (expectedNodes.contains(node)) {
+                expectedRelatedNodesForDataPoints.add(node);
+            } else {
+                inputRelatedNodesForDataPoints.add(node);
+            }
+        }
+        this.expectedType = _getCommonType(expectedRelatedNodes);
+        this.inputType = _getInputType(mostDifferentNodesInOrigin, mostDifferentNodesFromAnother);
+    }
+
+    protected List<MethodDeclaration> getSimilarMethods() {
+        return this.similarMethods;
+    }
+    protected List<ASTNode> getInputRelatedNodes() {
+        return this.inputRelatedNodes;
+    }
+    protected List<ASTNode> getExpectedRelatedNodes() {
+        return this.expectedRelatedNodes;
+    }
+    protected List<ASTNode> getInputRelatedNodesForDataPoints() {
+        return this.inputRelatedNodesForDataPoints;
+    }
+    protected List<ASTNode> getExpectedRelatedNodesForDataPoints() {
+        return this.expectedRelatedNodesForDataPoints;
+    }
+    protected Type getInputType() {
+        return (Type) ASTNode.copySubtree(ast, this.inputType);
+    }
+    protected Type getExpectedType() {
+        return (Type) ASTNode.copySubtree(ast, this.expectedType);
+    }
+
+    /**
+     * Get nodes of the given similar method at the positions of inputs of data points in the origin
+     */
+    protected List<ASTNode> getInputsForDataPoints(MethodDeclaration method) {
+        return _getNodesAt(method, inputRelatedNodesForDataPoints);
+    }
+    protected List<ASTNode> getExpectedsForDataPoints(MethodDeclaration method) {
+        return _getNodesAt(method, expectedRelatedNodesForDataPoints);
+    }
+    protected List<TypeLattice.Kind> getInputKinds() {
+        if (inputKinds == null) {
+            inputKinds = _getKinds(inputRelatedNodesForDataPoints);
+        }
+        return inputKinds;
+    }
+    protected List<TypeLattice.Kind> getExpectedKinds() {
+        if (expectedKinds == null) {
+            expectedKinds = _getKinds(expectedRelatedNodesForDataPoints);
+        }
+        return expectedKinds;
+    }
+
+    /* --------------------- helper -------------------------------------- */
+
+    private List<ASTNode> _getNodesAt(MethodDeclaration method, List<ASTNode> relatedNodes) {
+        List<ASTNode> originNodes = testSuite.getNodes(origin);
+        List<ASTNode> methodNodes = testSuite.getNodes(method);
+        List<ASTNode> ret = new ArrayList<>();
+        for (int j = 0; j < originNodes.size(); j++) {
+            if (relatedNodes.contains(originNodes.get(j))) {
+                ret.add(methodNodes.get(j));
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Join types of nodes at each position over all the similar methods
+     */
+    private List<TypeLattice.Kind> _getKinds(List<ASTNode> relatedNodes) {
+        List<TypeLattice.Kind> ret = new ArrayList<>();
+        for (MethodDeclaration method : similarMethods) {
+            List<ASTNode> nodes = _getNodesAt(method, relatedNodes);
+            for (int i = 0; i < nodes.size(); i++) {
+                TypeLattice.Kind kind = TypeLattice.classify(nodes.get(i));
+                if (ret.size() <= i) {
+                    ret.add(kind);
+                } else {
+                    ret.set(i, TypeLattice.join(ret.get(i), kind));
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Common type of inputs in the origin, widened to double if another method has double values where the origin has int ones
+     */
+    private Type _getInputType(List<ASTNode> mostDifferentNodesInOrigin, List<ASTNode> mostDifferentNodesFromAnother) {
+        // commonじゃないnodeからinputを抽出する
+        List<ASTNode> inputRelatedNodesInOrigin = _getInputRelatedNodes(mostDifferentNodesInOrigin);
+        List<ASTNode> inputRelatedNodesFromAnother = _getInputRelatedNodes(mostDifferentNodesFromAnother);
+        TypeLattice.Kind kind = TypeLattice.classify(inputRelatedNodesInOrigin);
+        // Widen only if both are arrays or both are not
+        if (kind == TypeLattice.Kind.INT
+                && (1 < inputRelatedNodesInOrigin.size()) == (1 < inputRelatedNodesFromAnother.size())) {
+            TypeLattice.Kind another = TypeLattice.classify(inputRelatedNodesFromAnother);
+            if (TypeLattice.join(kind, another) == TypeLattice.Kind.DOUBLE) {
+                kind = another;
+            }
+        }
+        return _toType(kind, inputRelatedNodesInOrigin.size());
+    }
+
+    private List<ASTNode> _getInputRelatedNodes(List<ASTNode> nodes) {
+        List<ASTNode> ret = new ArrayList<>();
+        for (ASTNode node : nodes) {
+            if (!expectedNodes.contains(node)) {
+                ret.add(node);
+            }
+        }
+        return ret;
+    }
+
+    private Type _getCommonType(List<ASTNode> nodes) {
+        return _toType(TypeLattice.classify(nodes), nodes.size());
+    }
+
+    /**
+     * Type of a parameter, which is an array if it stands for more than one node
+     */
+    private Type _toType(TypeLattice.Kind kind, int numOfNodes) {
+        Type type = TypeLattice.toType(ast, kind);
+        return 1 < numOfNodes ? ast.newArrayType(type) : type;
+    }
+}
@@ -0,0 +1,121 @@
+package jp.mzw.autoput.generate;
+
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.BooleanLiteral;
+import org.eclipse.jdt.core.dom.CharacterLiteral;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.PrimitiveType;
+import org.eclipse.jdt.core.dom.StringLiteral;
+import org.eclipse.jdt.core.dom.Type;
+
+import java.util.List;
+
+/**
+ * Lattice of types that parameters can have.
+ * Numeric types are ordered by widening, i.e., byte < short < int < long < float < double,
+ * and any other pair of different types is joined into Object.
+ */
+class TypeLattice {
+
+    enum Kind {
+        BYTE, SHORT, INT, LONG, FLOAT, DOUBLE, STRING, CHAR, BOOLEAN, OBJECT;
+
+        boolean isNumeric() {
+            return ordinal() <= DOUBLE.ordinal();
+        }
+    }
+
+    /**
+     * Get the narrowest type of all the given nodes by visiting them only once
+     *
+     * @return Object if nodes are empty
+     */
+    static Kind classify(List<ASTNode> nodes) {
+        if (nodes == null || nodes.isEmpty()) {
+            return Kind.OBJECT;
+        }
+        Kind ret = null;
+        for (ASTNode node : nodes) {
+            ret = ret == null ? classify(node) : join(ret, classify(node));
+            if (ret == Kind.OBJECT) {
+                break;
+            }
+        }
+        return ret;
+    }
+
+    static Kind classify(ASTNode node) {
+        if (node instanceof StringLiteral) {
+            return Kind.STRING;
+        } else if (node instanceof CharacterLiteral) {
+            return Kind.CHAR;
+        } else if (node instanceof BooleanLiteral) {
+            return Kind.BOOLEAN;
+        } else if (!(node instanceof Expression)) {
+            return Kind.OBJECT;
+        }
+        ITypeBinding binding = ((Expression) node).resolveTypeBinding();
+        if (binding == null) {
+            return Kind.OBJECT;
+        }
+        switch (binding.getName()) {
+            case "String":
+                return Kind.STRING;
+            case "byte":
+                return Kind.BYTE;
+            case "short":
+                return Kind.SHORT;
+            case "int":
+                return Kind.INT;
+            case "long":
+                return Kind.LONG;
+            case "float":
+                return Kind.FLOAT;
+            case "double":
+                return Kind.DOUBLE;
+            case "char":
+                return Kind.CHAR;
+            case "boolean":
+                return Kind.BOOLEAN;
+            default:
+                return Kind.OBJECT;
+        }
+    }
+
+    static Kind join(Kind kind1, Kind kind2) {
+        if (kind1 == kind2) {
+            return kind1;
+        }
+        if (kind1.isNumeric() && kind2.isNumeric()) {
+            return kind1.ordinal() < kind2.ordinal() ? kind2 : kind1;
+        }
+        return Kind.OBJECT;
+    }
+
+    static Type toType(AST ast, Kind kind) {
+        switch (kind) {
+            case BYTE:
+                return ast.newPrimitiveType(PrimitiveType.BYTE);
+            case SHORT:
+                return ast.newPrimitiveType(PrimitiveType.SHORT);
+            case INT:
+                return ast.newPrimitiveType(PrimitiveType.INT);
+            case LONG:
+                return ast.newPrimitiveType(PrimitiveType.LONG);
+            case FLOAT:
+                return ast.newPrimitiveType(PrimitiveType.FLOAT);
+            case DOUBLE:
+                return ast.newPrimitiveType(PrimitiveType.DOUBLE);
+            case STRING:
+                return ast.newSimpleType(ast.newName("String"));
+            case CHAR:
+                return ast.newPrimitiveType(PrimitiveType.CHAR);
+            case BOOLEAN:
+                return ast.newPrimitiveType(PrimitiveType.BOOLEAN);
+            default:
+                return ast.newSimpleType(ast.newName("Object"));
+        }
+    }
+}
@@ -24,9 +24,23 @@ public class MavenUtils {
         return ret;
     }
 
+    /**
+     * Compile tests while collecting lines of Maven output, e.g., to find files having compile errors
+     */
+    public static int testCompile(File projectHome, File mavenHome, String testName, List<String> output) {
+        List<String> goal = Arrays.asList("test-compile");
+        int ret = -1;
+        try {
+            ret = maven(projectHome, mavenHome, goal, testName, output);
+        } catch (MavenInvocationException e) {
+            LOGGER.error("MavenInvocationException is thrown at {}", testName);
+        }
+        return ret;
+    }
+
     public static int measureCoverage(File projectHome, File mavenHome, String originName, String mode) {
-        // coverage measurement contains test execution.
-        List<String> goal = Arrays.asList("jacoco:prepare-agent", "test", "-Dtest=" + mode, "-DfailIfNoTests=false", "jacoco:report");
+        // coverage measurement contains test execution, whose result is target/jacoco.exec
+        List<String> goal = Arrays.asList("jacoco:prepare-agent", "test", "-Dtest=" + mode, "-DfailIfNoTests=false");
         int ret = -1;
         try {
             ret = maven(projectHome, mavenHome, goal, originName);
@@ -36,7 +50,28 @@ public class MavenUtils {
         return ret;
     }
 
+    /**
+     * Write the resolved dependency classpath of the project into the given file
+     */
+    public static int buildClasspath(File projectHome, File mavenHome, File outputFile) {
+        List<String> goal = Arrays.asList("dependency:build-classpath", "-Dmdep.outputFile=" + outputFile.getAbsolutePath());
+        int ret = -1;
+        try {
+            ret = maven(projectHome, mavenHome, goal, projectHome.getName());
+        } catch (MavenInvocationException e) {
+            LOGGER.error("MavenInvocationException is thrown at {}", projectHome.getName());
+        }
+        return ret;
+    }
+
     private static int maven(File projectHome, File mavenHome, List<String> goal, String testName) throws MavenInvocationException {
+        return maven(projectHome, mavenHome, goal, testName, null);
+    }
+
+    /**
+     * @param output lines of Maven output are added if not null
+     */
+    private static int maven(File projectHome, File mavenHome, List<String> goal, String testName, List<String> output) throws MavenInvocationException {
         InvocationRequest request = new DefaultInvocationRequest();
         request.setPomFile(new File(projectHome, FILENAME_POM));
         request.setGoals(goal);
@@ -45,6 +80,9 @@ public class MavenUtils {
         invoker.setOutputHandler(new InvocationOutputHandler() {
             @Override
             public void consumeLine(String s) {
+                if (output != null) {
+                    output.add(s);
+                }
                 if (s.contains("[INFO] BUILD FAILURE")) {
                     LOGGER.warn("BUILD FAILURE: {}", testName);
                 } else if (s.contains("[INFO] BUILD SUCCESS")) {
@@ -55,6 +93,9 @@ public class MavenUtils {
         invoker.setErrorHandler(new InvocationOutputHandler() {
             @Override
             public void consumeLine(String s) {
+                if (output != null) {
+                    output.add(s);
+                }
                 if (s.contains("[INFO] BUILD FAILURE")) {
                     LOGGER.warn("BUILD FAILURE: {}", testName);
                 } else if (s.contains("[INFO] BUILD SUCCESS")) {
@@ -0,0 +1,92 @@
+package jp.mzw.autoput.requirement;
+
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfoStore;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Instruction and branch counters of the classes under test, analyzed from execution data by the JaCoCo core
+ * instead of the HTML report, so that PUT and original CUTs are compared exactly.
+ * Only classes of the subject executed by tests are analyzed, and their class IDs are compared as well.
+ */
+class Coverage {
+
+    private final int coveredInstructions;
+    private final int missedInstructions;
+    private final int coveredBranches;
+    private final int missedBranches;
+    /** IDs of executed classes of the subject */
+    private final Set<Long> executedClasses;
+
+    private Coverage(ICounter instructions, ICounter branches, Set<Long> executedClasses) {
+        this.coveredInstructions = instructions.getCoveredCount();
+        this.missedInstructions = instructions.getMissedCount();
+        this.coveredBranches = branches.getCoveredCount();
+        this.missedBranches = branches.getMissedCount();
+        this.executedClasses = executedClasses;
+    }
+
+    /**
+     * @param executionData content of jacoco.exec
+     * @param classesDir compiled classes of the subject, to which analysis is limited
+     */
+    static Coverage analyze(byte[] executionData, File classesDir) throws IOException {
+        ExecutionDataStore executionDataStore = new ExecutionDataStore();
+        ExecutionDataReader reader = new ExecutionDataReader(new ByteArrayInputStream(executionData));
+        reader.setExecutionDataVisitor(executionDataStore);
+        reader.setSessionInfoVisitor(new SessionInfoStore());
+        reader.read();
+        CoverageBuilder builder = new CoverageBuilder();
+        Analyzer analyzer = new Analyzer(executionDataStore, builder);
+        Set<Long> executedClasses = new TreeSet<>();
+        for (ExecutionData data : executionDataStore.getContents()) {
+            // Skip test classes and dependencies
+            File classFile = new File(classesDir, data.getName() + ".class");
+            if (!data.hasHits() || !classFile.exists()) {
+                continue;
+            }
+            try (InputStream is = Files.newInputStream(classFile.toPath())) {
+                analyzer.analyzeClass(is, classFile.getPath());
+            }
+            executedClasses.add(data.getId());
+        }
+        IBundleCoverage bundle = builder.getBundle(classesDir.getPath());
+        return new Coverage(bundle.getInstructionCounter(), bundle.getBranchCounter(), executedClasses);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Coverage)) {
+            return false;
+        }
+        Coverage other = (Coverage) obj;
+        return coveredInstructions == other.coveredInstructions && missedInstructions == other.missedInstructions
+                && coveredBranches == other.coveredBranches && missedBranches == other.missedBranches
+                && executedClasses.equals(other.executedClasses);
+    }
+
+    @Override
+    public int hashCode() {
+        return (((coveredInstructions * 31 + missedInstructions) * 31 + coveredBranches) * 31 + missedBranches) * 31 + executedClasses.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "instructions " + coveredInstructions + "/" + (coveredInstructions + missedInstructions)
+                + ", branches " + coveredBranches + "/" + (coveredBranches + missedBranches)
+                + ", classes " + executedClasses.size();
+    }
+}
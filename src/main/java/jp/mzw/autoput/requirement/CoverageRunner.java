@@ -0,0 +1,60 @@
+package jp.mzw.autoput.requirement;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Main class of a runner JVM started by RunnerPool with the JaCoCo agent attached.
+ * Each line of the standard input has a test class to run followed by directories of compiled classes, and
+ * a line having whether tests passed and the execution data encoded in Base64 is written to the standard output.
+ * This class uses only the JDK because JUnit and the JaCoCo runtime are those of the subject, which are accessed by reflection.
+ */
+public class CoverageRunner {
+
+    static final String RESULT = "RESULT";
+
+    public static void main(String[] args) throws Exception {
+        // Keep the standard output for results, and send outputs of tests to the standard error
+        PrintStream out = new PrintStream(System.out, true, StandardCharsets.UTF_8.name());
+        System.setOut(System.err);
+        Object agent = Class.forName("org.jacoco.agent.rt.RT").getMethod("getAgent").invoke(null);
+        Class<?> agentClass = Class.forName("org.jacoco.agent.rt.IAgent");
+        Method reset = agentClass.getMethod("reset");
+        Method getExecutionData = agentClass.getMethod("getExecutionData", boolean.class);
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] request = line.split("\t");
+            URL[] urls = new URL[request.length - 1];
+            for (int i = 1; i < request.length; i++) {
+                urls[i - 1] = new File(request[i]).toURI().toURL();
+            }
+            boolean passed = false;
+            reset.invoke(agent);
+            // Load classes of the subject as well as the candidate freshly, so that static initializers are covered every time
+            ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+            try (URLClassLoader loader = new URLClassLoader(urls, CoverageRunner.class.getClassLoader())) {
+                // As surefire does, for tests and libraries looking up classes and resources by the context class loader
+                Thread.currentThread().setContextClassLoader(loader);
+                Class<?> junitCore = loader.loadClass("org.junit.runner.JUnitCore");
+                Class<?> testClass = loader.loadClass(request[0]);
+                Object result = junitCore.getMethod("runClasses", Class[].class).invoke(null, (Object) new Class<?>[] {testClass});
+                passed = (Boolean) result.getClass().getMethod("wasSuccessful").invoke(result);
+            } catch (Throwable e) {
+                e.printStackTrace();
+            } finally {
+                Thread.currentThread().setContextClassLoader(contextClassLoader);
+            }
+            byte[] executionData = (byte[]) getExecutionData.invoke(agent, true);
+            out.println(String.join("\t", RESULT, String.valueOf(passed), Base64.getEncoder().encodeToString(executionData)));
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package jp.mzw.autoput.requirement;
+
+import jp.mzw.autoput.maven.MavenUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compile a test class in process against compiled classes of the subject, instead of test-compile by Maven.
+ * Sources are read from memory and class files are discarded or written to a given directory, so that nothing is written to the subject.
+ */
+public class InProcessCompiler {
+    protected static Logger LOGGER = LoggerFactory.getLogger(InProcessCompiler.class);
+
+    private static final Pattern PROPERTY_REFERENCE = Pattern.compile("\\$\\{([^}]+)\\}");
+
+    protected JavaCompiler compiler;
+    protected List<String> options;
+
+    private InProcessCompiler(JavaCompiler compiler, List<String> classpath, String source, String target, String encoding) {
+        this.compiler = compiler;
+        this.options = new ArrayList<>(Arrays.asList("-classpath", String.join(File.pathSeparator, classpath), "-proc:none", "-nowarn", "-g:none",
+                "-source", source, "-target", target));
+        // Maven also uses the platform encoding if not configured
+        if (encoding != null) {
+            this.options.addAll(Arrays.asList("-encoding", encoding));
+        }
+    }
+
+    /**
+     * @param projectHome directory having pom.xml, which is compiled by Maven beforehand
+     * @param dependencies class path of dependency jars
+     * @return compiler, or null if no compiler is available, the class path is not resolved, or source and target versions are unknown
+     */
+    public static InProcessCompiler create(File projectHome, String[] dependencies) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            LOGGER.warn("No Java compiler is available, compile by Maven instead");
+            return null;
+        }
+        File classes = new File(projectHome, "target/classes");
+        File testClasses = new File(projectHome, "target/test-classes");
+        if (dependencies == null || !classes.exists() || !testClasses.exists()) {
+            LOGGER.warn("Class path of {} is not resolved, compile by Maven instead", projectHome);
+            return null;
+        }
+        Map<String, String> config = readCompilerConfig(projectHome);
+        if (config == null || config.get("source") == null || config.get("target") == null) {
+            // Defaults depend on the version of maven-compiler-plugin
+            LOGGER.warn("Source and target versions of {} are unknown, compile by Maven instead", projectHome);
+            return null;
+        }
+        List<String> classpath = new ArrayList<>();
+        classpath.add(classes.getPath());
+        classpath.add(testClasses.getPath());
+        classpath.addAll(Arrays.asList(dependencies));
+        return new InProcessCompiler(compiler, classpath, config.get("source"), config.get("target"), config.get("encoding"));
+    }
+
+    /**
+     * Read source, target and encoding from maven-compiler-plugin configuration or properties in pom.xml of the subject and its parent.
+     * Values of the subject override those of the parent, and property references are resolved.
+     *
+     * @return configuration having source, target and encoding if found, or null if failed to read pom.xml
+     */
+    static Map<String, String> readCompilerConfig(File projectHome) {
+        List<File> poms = new ArrayList<>();
+        poms.add(new File(projectHome.getParentFile(), MavenUtils.FILENAME_POM));
+        poms.add(new File(projectHome, MavenUtils.FILENAME_POM));
+        Map<String, String> properties = new HashMap<>();
+        Map<String, String> plugin = new HashMap<>();
+        try {
+            for (File pom : poms) {
+                if (!pom.exists()) {
+                    continue;
+                }
+                Element project = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(pom).getDocumentElement();
+                for (Element element : children(child(project, "properties"))) {
+                    properties.put(element.getTagName(), element.getTextContent().trim());
+                }
+                for (Element element : children(child(child(project, "build"), "plugins"))) {
+                    Element artifactId = child(element, "artifactId");
+                    if (artifactId != null && "maven-compiler-plugin".equals(artifactId.getTextContent().trim())) {
+                        for (Element config : children(child(element, "configuration"))) {
+                            plugin.put(config.getTagName(), config.getTextContent().trim());
+                        }
+                    }
+                }
+            }
+        } catch (IOException | SAXException | ParserConfigurationException e) {
+            LOGGER.error("Fail to read compiler configuration of {}: {}", projectHome, e.getMessage());
+            return null;
+        }
+        Map<String, String> config = new HashMap<>();
+        config.put("source", resolve(plugin.getOrDefault("source", properties.get("maven.compiler.source")), properties));
+        config.put("target", resolve(plugin.getOrDefault("target", properties.get("maven.compiler.target")), properties));
+        config.put("encoding", resolve(plugin.getOrDefault("encoding", properties.getOrDefault("maven.compiler.encoding", properties.get("project.build.sourceEncoding"))), properties));
+        return config;
+    }
+
+    /**
+     * @return value whose property references are resolved, or null if any of them is unknown
+     */
+    private static String resolve(String value, Map<String, String> properties) {
+        // Bounded for cyclic references
+        for (int i = 0; value != null && i < 10; i++) {
+            Matcher matcher = PROPERTY_REFERENCE.matcher(value);
+            if (!matcher.find()) {
+                return value;
+            }
+            String property = properties.get(matcher.group(1));
+            value = property == null ? null : value.substring(0, matcher.start()) + property + value.substring(matcher.end());
+        }
+        return null;
+    }
+
+    private static Element child(Element parent, String tagName) {
+        for (Element element : children(parent)) {
+            if (tagName.equals(element.getTagName())) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    private static List<Element> children(Element parent) {
+        List<Element> children = new ArrayList<>();
+        if (parent == null) {
+            return children;
+        }
+        NodeList nodes = parent.getChildNodes();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            if (nodes.item(i).getNodeType() == Node.ELEMENT_NODE) {
+                children.add((Element) nodes.item(i));
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Compile the given test class. This can be called from multiple threads.
+     *
+     * @return true if compiled without errors
+     */
+    public boolean compile(String packageName, String className, String content) {
+        return compile(packageName, className, content, null);
+    }
+
+    /**
+     * Compile the given test class, writing class files into the given directory, e.g., to run them on RunnerPool
+     *
+     * @param outputDir directory for class files, or null to discard them
+     * @return true if compiled without errors
+     */
+    public boolean compile(String packageName, String className, String content, File outputDir) {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        StandardJavaFileManager standard = compiler.getStandardFileManager(diagnostics, null, null);
+        try (JavaFileManager fileManager = outputDir == null ? new DiscardingFileManager(standard) : standard) {
+            if (outputDir != null) {
+                standard.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(outputDir));
+            }
+            JavaFileObject source = new SourceFileObject(packageName, className, content);
+            Boolean ret = compiler.getTask(null, fileManager, diagnostics, options, null, Collections.singletonList(source)).call();
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                    LOGGER.info("Compile error at {}.{} line {}: {}", packageName, className, diagnostic.getLineNumber(), diagnostic.getMessage(null));
+                }
+            }
+            return Boolean.TRUE.equals(ret);
+        } catch (IOException e) {
+            LOGGER.error("Fail to compile {}: {}", className, e.getMessage());
+            return false;
+        }
+    }
+
+    /* ------------------------------------------------------------------ */
+
+    private static class SourceFileObject extends SimpleJavaFileObject {
+        private final String content;
+
+        private SourceFileObject(String packageName, String className, String content) {
+            super(URI.create("string:///" + (packageName.isEmpty() ? "" : packageName.replace(".", "/") + "/") + className + Kind.SOURCE.extension), Kind.SOURCE);
+            this.content = content;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return content;
+        }
+    }
+
+    private static class DiscardingFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+        private DiscardingFileManager(StandardJavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+            return new SimpleJavaFileObject(URI.create("mem:///" + className.replace(".", "/") + kind.extension), kind) {
+                @Override
+                public OutputStream openOutputStream() {
+                    return new ByteArrayOutputStream();
+                }
+            };
+        }
+    }
+}
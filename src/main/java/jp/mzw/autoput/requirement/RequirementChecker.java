@@ -5,27 +5,54 @@ import jp.mzw.autoput.core.Project;
 import jp.mzw.autoput.generate.Generator;
 import jp.mzw.autoput.maven.MavenUtils;
 import org.apache.commons.csv.CSVRecord;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.FieldAccess;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.QualifiedName;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.SimpleType;
+import org.eclipse.jdt.core.dom.StructuralPropertyDescriptor;
+import org.eclipse.jdt.core.dom.ThisExpression;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class RequirementChecker {
     protected static Logger LOGGER = LoggerFactory.getLogger(RequirementChecker.class);
 
     private static final String REQUIREMENT_PATH = "requirement";
     private static final String JACOCO_PATH = "jacoco";
+    private static final String WORKSPACE_PATH = "workspaces";
+    private static final String RUNNER_PATH = "runner";
+    /** File names of PUTs and original CUTs renamed in batch compile */
+    private static final Pattern CANDIDATE_FILE = Pattern.compile("(" + Main.PUT + "|" + Main.CUT + ")_\\d+\\.java");
 
     // FIXME: use enum
     protected static final int PARAMETERIZE_SUCCESS = 1;
@@ -34,6 +61,12 @@ public class RequirementChecker {
 
     protected Project project;
     protected Generator generator;
+    /** Whether each PUT and original CUTs compile, keyed by _getKey, or null if not compiled in batch */
+    protected Map<String, Boolean> compiled;
+    /** Compiler used in R1 instead of Maven, or null */
+    protected InProcessCompiler compiler;
+    /** Runners used in R2 instead of Maven, or null */
+    protected RunnerPool runners;
 
     public RequirementChecker(Project project) {
         this.project = project;
@@ -42,14 +75,40 @@ public class RequirementChecker {
 
     public void check() {
         List<CSVRecord> records = generator.getDetectResult();
+        if (project.isInProcessCompile()) {
+            compiler = InProcessCompiler.create(new File(_getPathToBaseDir(project.getProjectDir())), project.getDependencyClasspath());
+        }
+        if (project.isBatchCompile() && compiler != null) {
+            LOGGER.warn("batch_compile is ignored since candidates are compiled in process");
+        } else if (project.isBatchCompile()) {
+            compiled = _compileInBatch(records);
+        }
+        if (project.isWarmRunner() && compiled != null) {
+            // Candidates compiled in batch are not kept as class files to run on runners
+            LOGGER.warn("warm_runner is ignored since candidates are compiled in batch, measure coverage by Maven instead");
+        } else if (project.isWarmRunner()) {
+            runners = RunnerPool.create(project.getJacocoAgent(), project.getDependencyClasspath(), new File(_getPathToBaseDir(project.getProjectDir())), _getPathToRunnerDir());
+        }
+        LOGGER.info("Check R1 by {} and R2 by {}",
+                compiler != null ? "in-process compiler" : compiled != null ? "batch compile" : "Maven",
+                runners != null ? "warm runners" : "Maven");
+        List<Integer> statuses;
+        try {
+            statuses = 1 < project.getRequirementWorkers() ? _checkInParallel(records) : new ArrayList<>();
+            if (statuses.isEmpty()) {
+                for (CSVRecord record : records) {
+                    statuses.add(_check(project.getProjectDir(), record.get(0), record.get(1), record.get(2)));
+                }
+            }
+        } finally {
+            if (runners != null) {
+                runners.close();
+            }
+        }
         int numOfSuccess           = 0;
         int numOfCompileFailure    = 0;
         int numOfCovereageDecrease = 0;
-        for (CSVRecord record : records) {
-            String packageName = record.get(0);
-            String className = record.get(1);
-            String testName = record.get(2);
-            int status = _check(packageName, className, testName);
+        for (int status : statuses) {
             if (status == PARAMETERIZE_SUCCESS) {
                 numOfSuccess++;
             } else if (status == COMPILE_FAILURE) {
@@ -63,78 +122,429 @@ public class RequirementChecker {
         System.out.println("Coverage Decrease: " + numOfCovereageDecrease);
     }
 
-    private int  _check(String packageName, String className, String testName) {
+    /**
+     * Check records on workspaces cloned from the subject, where each worker uses a workspace at a time.
+     * Workspaces are deleted after the checks finish.
+     *
+     * @return statuses in the order of records, or empty if workspaces are not prepared
+     */
+    private List<Integer> _checkInParallel(List<CSVRecord> records) {
+        int workers = project.getRequirementWorkers();
+        BlockingQueue<File> workspaces = new ArrayBlockingQueue<>(workers);
+        try {
+            for (int i = 0; i < workers; i++) {
+                File workspaceDir = new File(String.join("/", project.getOutputDir().getName(), project.getProjectId(), WORKSPACE_PATH, String.valueOf(i)));
+                workspaces.add(workspaceDir);
+                try {
+                    Workspace.create(project.getProjectDir(), workspaceDir);
+                } catch (IOException e) {
+                    LOGGER.error("Fail to create workspace {}, check serially instead: {}", workspaceDir, e.getMessage());
+                    return new ArrayList<>();
+                }
+            }
+            return _checkOnWorkspaces(records, workspaces);
+        } finally {
+            // Workspaces have copies of target directories
+            for (File workspaceDir : workspaces) {
+                try {
+                    Workspace.delete(workspaceDir.toPath());
+                } catch (IOException e) {
+                    LOGGER.error("Fail to delete {}", workspaceDir);
+                }
+            }
+        }
+    }
+
+    private List<Integer> _checkOnWorkspaces(List<CSVRecord> records, BlockingQueue<File> workspaces) {
+        ExecutorService executor = Executors.newFixedThreadPool(workspaces.size());
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (CSVRecord record : records) {
+            futures.add(executor.submit(() -> {
+                File workspaceDir = workspaces.take();
+                try {
+                    return _check(workspaceDir, record.get(0), record.get(1), record.get(2));
+                } finally {
+                    // Not put, which throws if interrupted, so that the workspace is deleted anyway
+                    workspaces.add(workspaceDir);
+                }
+            }));
+        }
+        List<Integer> statuses = new ArrayList<>();
+        try {
+            for (Future<Integer> future : futures) {
+                statuses.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while checking requirements in parallel", e);
+        } catch (ExecutionException e) {
+            // 直列の場合と同様に例外を伝播させ, 集計に含めない
+            LOGGER.error("Fail to check requirements: {}", e.getCause().getMessage());
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+            // Workspaces are deleted after running checks finish
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return statuses;
+    }
+
+    private int _check(File subjectDir, String packageName, String className, String testName) {
+        File classesDir = _createClassesDir();
+        try {
+            return _check(subjectDir, packageName, className, testName, classesDir);
+        } finally {
+            if (classesDir != null) {
+                try {
+                    Workspace.delete(classesDir.toPath());
+                } catch (IOException e) {
+                    LOGGER.error("Fail to delete {}", classesDir);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param classesDir directory for compiled PUT and original CUTs run on runners, or null
+     */
+    private int  _check(File subjectDir, String packageName, String className, String testName, File classesDir) {
         // prepare
-        File projectHome = new File(_getPathToBaseDir(project));
-        File mavenHome = project.getMavenHome();
+        File projectHome = new File(_getPathToBaseDir(subjectDir));
 
         // check PUT
-        _deletePUTandOriginalCUTs(packageName);
+        _deletePUTandOriginalCUTs(subjectDir, packageName);
         String contentPUT = generator.getPUT(packageName, className, testName);
-        deployPUT(packageName, contentPUT);
+        byte[] dataPoints = generator.getDataPoints(packageName, className, testName);
+        deployPUT(subjectDir, packageName, contentPUT);
+        deployDataPoints(subjectDir, packageName, dataPoints);
+        if (classesDir != null && dataPoints != null) {
+            // runners read data points next to the class files compiled in process
+            _deploy(new File(classesDir, packageName.replace(".", "/")), Main.PUT + Main.DATA_POINTS, dataPoints);
+        }
         // R1 (test compile)
-        int testCompile = MavenUtils.testCompile(projectHome, mavenHome, testName);
+        int testCompile = _testCompile(projectHome, packageName, className, testName, Main.PUT, contentPUT, classesDir);
         if (testCompile != 0) {
             LOGGER.info("Fail to compile {} {}", testName, Main.PUT);
-            _deletePUTandOriginalCUTs(packageName);
+            _deletePUTandOriginalCUTs(subjectDir, packageName);
             return COMPILE_FAILURE;
         }
         // R2 (coverage measurement & test execution)
-        int coveragePUT = -1;
-        _deleteJacocoExec(project);
-        int measureCoverage = MavenUtils.measureCoverage(projectHome, mavenHome, testName, Main.PUT);
-        if (measureCoverage == 0) {
-            _copyCoverageReport(packageName, className, testName, Main.PUT);
-            String content = _getCoverageReport(packageName, className, testName, Main.PUT);
-            Document document = Jsoup.parse(content);
-            Element element = document.select("#coveragetable tfoot tr .ctr2").first();
-            coveragePUT = Integer.parseInt(element.text().replace("%", ""));
-        } else {
+        Coverage coveragePUT = runners != null
+                ? _measureCoverageOnRunner(projectHome, classesDir, packageName, className, testName, Main.PUT)
+                : _measureCoverageByMaven(subjectDir, projectHome, packageName, className, testName, Main.PUT);
+        if (coveragePUT == null) {
             LOGGER.info("Fail to measure coverage {} {}", testName, Main.PUT);
-            _deletePUTandOriginalCUTs(packageName);
+            _deletePUTandOriginalCUTs(subjectDir, packageName);
             return COVERAGE_DECREASE;
         }
 
 
         // check original CUTs
-        _deletePUTandOriginalCUTs(packageName);
+        _deletePUTandOriginalCUTs(subjectDir, packageName);
         String contentOriginalCUTs = generator.getOriginalCUTs(packageName, className, testName);
-        deployOriginalCUTs(packageName, contentOriginalCUTs);
+        deployOriginalCUTs(subjectDir, packageName, contentOriginalCUTs);
         // R1 (test compile)
-        testCompile = MavenUtils.testCompile(projectHome, mavenHome, testName);
+        testCompile = _testCompile(projectHome, packageName, className, testName, Main.CUT, contentOriginalCUTs, classesDir);
         if (testCompile != 0) {
             LOGGER.info("Fail to compile {} {}", testName, Main.CUT);
-            _deletePUTandOriginalCUTs(packageName);
+            _deletePUTandOriginalCUTs(subjectDir, packageName);
             return COMPILE_FAILURE;
         }
         // R2 (coverage measurement & test execution)
-        int coverageCUTs = -2;
-        _deleteJacocoExec(project);
-        measureCoverage = MavenUtils.measureCoverage(projectHome, mavenHome, testName, Main.CUT);
-        if (measureCoverage == 0) {
-            _copyCoverageReport(packageName, className, testName, Main.CUT);
-            String content = _getCoverageReport(packageName, className, testName, Main.CUT);
-            Document document = Jsoup.parse(content);
-            Element element = document.select("#coveragetable tfoot tr .ctr2").first();
-            coverageCUTs = Integer.parseInt(element.text().replace("%", ""));
-        } else {
+        Coverage coverageCUTs = runners != null
+                ? _measureCoverageOnRunner(projectHome, classesDir, packageName, className, testName, Main.CUT)
+                : _measureCoverageByMaven(subjectDir, projectHome, packageName, className, testName, Main.CUT);
+        if (coverageCUTs == null) {
             LOGGER.info("Fail to measure coverage {} {}", testName, Main.CUT);
-            _deletePUTandOriginalCUTs(packageName);
+            _deletePUTandOriginalCUTs(subjectDir, packageName);
             return COVERAGE_DECREASE;
         }
 
-        _deleteJacocoExec(project);
-        _deletePUTandOriginalCUTs(packageName);
-        if (coveragePUT == coverageCUTs) {
+        _deleteJacocoExec(subjectDir);
+        _deletePUTandOriginalCUTs(subjectDir, packageName);
+        if (coveragePUT.equals(coverageCUTs)) {
             LOGGER.info("Generate PUT corrresponding to {} {} {}", packageName, className, testName);
             outputPUT(packageName, className, testName, contentPUT);
+            outputDataPoints(packageName, className, testName, dataPoints);
             // output for ease of comparing num of statements contained by unit tests
             outputOriginalCUTs(packageName, className, testName, contentOriginalCUTs);
             return PARAMETERIZE_SUCCESS;
         }
+        LOGGER.info("Coverage differs at {} {}: {} by {}, {} by {}", className, testName, coveragePUT, Main.PUT, coverageCUTs, Main.CUT);
         return COVERAGE_DECREASE;
     }
 
+    /**
+     * R1 of a deployed PUT or original CUTs, looked up if compiled in batch
+     *
+     * @param classesDir directory where the in-process compiler writes class files, or null to discard them
+     */
+    private int _testCompile(File projectHome, String packageName, String className, String testName, String mode, String content, File classesDir) {
+        if (compiled != null) {
+            return compiled.getOrDefault(_getKey(packageName, className, testName, mode), false) ? 0 : -1;
+        }
+        if (compiler != null) {
+            return compiler.compile(packageName, mode, content, classesDir) ? 0 : -1;
+        }
+        return MavenUtils.testCompile(projectHome, project.getMavenHome(), testName);
+    }
+
+    /**
+     * R2 by mvn jacoco:prepare-agent test, reading jacoco.exec without generating the report
+     *
+     * @return coverage, or null if failed
+     */
+    private Coverage _measureCoverageByMaven(File subjectDir, File projectHome, String packageName, String className, String testName, String mode) {
+        _deleteJacocoExec(subjectDir);
+        int measureCoverage = MavenUtils.measureCoverage(projectHome, project.getMavenHome(), testName, mode);
+        if (measureCoverage != 0) {
+            return null;
+        }
+        byte[] executionData;
+        try {
+            executionData = Files.readAllBytes(Paths.get(String.join("/", _getPathToBaseDir(subjectDir), "target", "jacoco.exec")));
+        } catch (IOException e) {
+            LOGGER.error("Fail to read jacoco.exec of {}: {}", mode, e.getMessage());
+            return null;
+        }
+        return _analyze(projectHome, packageName, className, testName, mode, executionData);
+    }
+
+    /**
+     * R2 on a runner, where the compiled PUT or original CUTs is looked up before test classes of the subject,
+     * i.e., compiled by Maven if the given directory is null
+     *
+     * @return coverage, or null if tests fail
+     */
+    private Coverage _measureCoverageOnRunner(File projectHome, File classesDir, String packageName, String className, String testName, String mode) {
+        List<File> classpath = new ArrayList<>();
+        if (classesDir != null) {
+            classpath.add(classesDir);
+        }
+        classpath.add(new File(projectHome, "target/test-classes"));
+        classpath.add(new File(projectHome, "target/classes"));
+        RunnerPool.Result result = runners.run(projectHome, packageName.isEmpty() ? mode : packageName + "." + mode, classpath);
+        if (result == null || !result.isPassed()) {
+            return null;
+        }
+        return _analyze(projectHome, packageName, className, testName, mode, result.getExecutionData());
+    }
+
+    /**
+     * Analyze coverage of compiled classes of the subject, keeping the execution data in the output directory
+     */
+    private Coverage _analyze(File projectHome, String packageName, String className, String testName, String mode, byte[] executionData) {
+        _outputExecutionData(packageName, className, testName, mode, executionData);
+        try {
+            return Coverage.analyze(executionData, new File(projectHome, "target/classes"));
+        } catch (IOException e) {
+            LOGGER.error("Fail to analyze coverage of {}: {}", mode, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Create a directory for class files compiled in process and run on runners
+     *
+     * @return directory, or null if classes are not run on runners or compiled by Maven
+     */
+    private File _createClassesDir() {
+        if (runners == null || compiler == null) {
+            return null;
+        }
+        try {
+            Files.createDirectories(_getPathToRunnerDir().toPath());
+            return Files.createTempDirectory(_getPathToRunnerDir().toPath(), "classes").toFile();
+        } catch (IOException e) {
+            LOGGER.error("Fail to create directory for classes: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private File _getPathToRunnerDir() {
+        return new File(String.join("/", project.getOutputDir().getName(), project.getProjectId(), RUNNER_PATH));
+    }
+
+    /**
+     * PUT or original CUTs renamed to be deployed together with others
+     */
+    private static class Candidate {
+        private final String key;
+        private final String packageName;
+        private final String className;
+        private final String content;
+
+        private Candidate(String key, String packageName, String className, String content) {
+            this.key = key;
+            this.packageName = packageName;
+            this.className = className;
+            this.content = content;
+        }
+    }
+
+    /**
+     * Compile all PUTs and original CUTs in a single test-compile, where each class has a unique name.
+     * Only if failed, candidates are divided by files having errors or bisected, and compiled again.
+     */
+    private Map<String, Boolean> _compileInBatch(List<CSVRecord> records) {
+        _deleteLeftoverCandidates(project.getProjectDir());
+        List<Candidate> candidates = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++) {
+            CSVRecord record = records.get(i);
+            String packageName = record.get(0);
+            String className = record.get(1);
+            String testName = record.get(2);
+            candidates.add(new Candidate(_getKey(packageName, className, testName, Main.PUT), packageName, Main.PUT + "_" + i,
+                    _rename(generator.getPUT(packageName, className, testName), Main.PUT, Main.PUT + "_" + i)));
+            candidates.add(new Candidate(_getKey(packageName, className, testName, Main.CUT), packageName, Main.CUT + "_" + i,
+                    _rename(generator.getOriginalCUTs(packageName, className, testName), Main.CUT, Main.CUT + "_" + i)));
+        }
+        Map<String, Boolean> ret = new HashMap<>();
+        _compileInBatch(candidates, ret);
+        return ret;
+    }
+
+    private void _compileInBatch(List<Candidate> candidates, Map<String, Boolean> results) {
+        File subjectDir = project.getProjectDir();
+        File projectHome = new File(_getPathToBaseDir(subjectDir));
+        List<Candidate> remaining = candidates;
+        while (!remaining.isEmpty()) {
+            List<String> output = Collections.synchronizedList(new ArrayList<>());
+            for (Candidate candidate : remaining) {
+                _deploy(_getPathToDeployCandidate(subjectDir, candidate), candidate.content);
+            }
+            int status = MavenUtils.testCompile(projectHome, project.getMavenHome(), remaining.size() + " candidates", output);
+            for (Candidate candidate : remaining) {
+                try {
+                    Files.deleteIfExists(Paths.get(_getPathToDeployCandidate(subjectDir, candidate)));
+                } catch (IOException e) {
+                    LOGGER.error("Fail to delete {}", candidate.className);
+                }
+            }
+            if (status == 0) {
+                for (Candidate candidate : remaining) {
+                    results.put(candidate.key, true);
+                }
+                return;
+            }
+            if (remaining.size() == 1) {
+                results.put(remaining.get(0).key, false);
+                return;
+            }
+            // エラーが報告されたファイルのクラスはコンパイルできない
+            List<Candidate> next = new ArrayList<>();
+            for (Candidate candidate : remaining) {
+                if (_hasCompileError(output, candidate)) {
+                    results.put(candidate.key, false);
+                } else {
+                    next.add(candidate);
+                }
+            }
+            if (next.size() == remaining.size()) {
+                // エラーの原因がわからない場合は二分する
+                int half = remaining.size() / 2;
+                _compileInBatch(remaining.subList(0, half), results);
+                _compileInBatch(remaining.subList(half, remaining.size()), results);
+                return;
+            }
+            remaining = next;
+        }
+    }
+
+    private static boolean _hasCompileError(List<String> output, Candidate candidate) {
+        synchronized (output) {
+            for (String line : output) {
+                if (line.contains("[ERROR]") && line.contains(candidate.className + ".java")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Delete candidates left in the subject, e.g., by a process killed during batch compile
+     */
+    private void _deleteLeftoverCandidates(File subjectDir) {
+        Path testDir = Paths.get(_getPathToDeployDir(subjectDir, ""));
+        if (!Files.isDirectory(testDir)) {
+            return;
+        }
+        List<Path> leftovers;
+        try (Stream<Path> paths = Files.walk(testDir)) {
+            leftovers = paths.filter(path -> CANDIDATE_FILE.matcher(path.getFileName().toString()).matches()).collect(Collectors.toList());
+        } catch (IOException e) {
+            LOGGER.error("Fail to find leftover candidates: {}", e.getMessage());
+            return;
+        }
+        for (Path leftover : leftovers) {
+            try {
+                Files.deleteIfExists(leftover);
+                LOGGER.info("Delete leftover candidate {}", leftover);
+            } catch (IOException e) {
+                LOGGER.error("Fail to delete {}", leftover);
+            }
+        }
+    }
+
+    /**
+     * Rename the declaration of the given class and references to it as a type,
+     * leaving string literals, comments and other identifiers as they are
+     */
+    private static String _rename(String content, String from, String to) {
+        ASTParser parser = ASTParser.newParser(AST.JLS8);
+        Map<String, String> options = JavaCore.getOptions();
+        JavaCore.setComplianceOptions(JavaCore.VERSION_1_8, options);
+        parser.setCompilerOptions(options);
+        parser.setKind(ASTParser.K_COMPILATION_UNIT);
+        parser.setSource(content.toCharArray());
+        CompilationUnit cu = (CompilationUnit) parser.createAST(null);
+        List<SimpleName> names = new ArrayList<>();
+        cu.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(SimpleName node) {
+                if (node.getIdentifier().equals(from) && _isTypeReference(node)) {
+                    names.add(node);
+                }
+                return false;
+            }
+        });
+        // 後ろから置換して位置がずれないようにする
+        StringBuilder sb = new StringBuilder(content);
+        for (int i = names.size() - 1; 0 <= i; i--) {
+            SimpleName name = names.get(i);
+            sb.replace(name.getStartPosition(), name.getStartPosition() + name.getLength(), to);
+        }
+        return sb.toString();
+    }
+
+    private static boolean _isTypeReference(SimpleName name) {
+        StructuralPropertyDescriptor location = name.getLocationInParent();
+        if (location == MethodDeclaration.NAME_PROPERTY) {
+            return ((MethodDeclaration) name.getParent()).isConstructor();
+        }
+        // e.g., AutoPUT.class, AutoPUT.Fixture, AutoPUT.method() and AutoPUT.this
+        return location == TypeDeclaration.NAME_PROPERTY
+                || location == SimpleType.NAME_PROPERTY
+                || location == QualifiedName.QUALIFIER_PROPERTY
+                || location == MethodInvocation.EXPRESSION_PROPERTY
+                || location == FieldAccess.EXPRESSION_PROPERTY
+                || location == ThisExpression.QUALIFIER_PROPERTY;
+    }
+
+    private static String _getKey(String packageName, String className, String testName, String mode) {
+        return String.join(",", packageName, className, testName, mode);
+    }
+
     private void outputPUT(String packageName, String className, String testName, String content) {
         if (!Files.exists(Paths.get(_getPathToOutput(packageName, className, testName)))) {
             try {
@@ -150,6 +560,17 @@ public class RequirementChecker {
             e.printStackTrace();
         }
     }
+    private void outputDataPoints(String packageName, String className, String testName, byte[] dataPoints) {
+        if (dataPoints == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(Paths.get(_getPathToOutput(packageName, className, testName)));
+            Files.write(Paths.get(String.join("/", _getPathToOutput(packageName, className, testName), Main.PUT + Main.DATA_POINTS)), dataPoints);
+        } catch (IOException e) {
+            LOGGER.error("Fail to output data points: {}", e.getMessage());
+        }
+    }
     private void outputOriginalCUTs(String packageName, String className, String testName, String content) {
         if (!Files.exists(Paths.get(_getPathToOutput(packageName, className, testName)))) {
             try {
@@ -171,48 +592,81 @@ public class RequirementChecker {
     }
 
 
-    private void _deletePUTandOriginalCUTs(String packageName) {
+    private void _deletePUTandOriginalCUTs(File subjectDir, String packageName) {
         try {
-            Files.deleteIfExists(Paths.get(getPathToDeployPUT(packageName)));
-            Files.deleteIfExists(Paths.get(getPathToDeployOriginalCUTs(packageName)));
+            Files.deleteIfExists(Paths.get(getPathToDeployPUT(subjectDir, packageName)));
+            Files.deleteIfExists(Paths.get(getPathToDeployOriginalCUTs(subjectDir, packageName)));
+            Files.deleteIfExists(Paths.get(getPathToDeployDataPoints(subjectDir, packageName)));
         } catch (IOException e) {
             LOGGER.error("Fail to delete PUT and original CUTS.");
         }
     }
 
-    private void _deleteJacocoExec(Project project) {
+    private void _deleteJacocoExec(File subjectDir) {
         try {
             Files.deleteIfExists(Paths.get(
-                    String.join("/", _getPathToBaseDir(project), "target", "jacoco.exec")));
+                    String.join("/", _getPathToBaseDir(subjectDir), "target", "jacoco.exec")));
         } catch (IOException e) {
             LOGGER.error("Fail to delete jacoco.exec.");
         }
     }
 
-    private void deployPUT(String packageName, String content) {
-        if (!Files.exists(Paths.get(getPathToDeployPUT(packageName)))) {
+    private void deployPUT(File subjectDir, String packageName, String content) {
+        if (!Files.exists(Paths.get(getPathToDeployPUT(subjectDir, packageName)))) {
             try {
-                Files.createFile(Paths.get(getPathToDeployPUT(packageName)));
+                Files.createFile(Paths.get(getPathToDeployPUT(subjectDir, packageName)));
             } catch (IOException e) {
                 LOGGER.error("Fail to deploy PUT: {}", e.getMessage());
             }
         }
-        try (BufferedWriter bw = Files.newBufferedWriter(Paths.get(getPathToDeployPUT(packageName)))){
+        try (BufferedWriter bw = Files.newBufferedWriter(Paths.get(getPathToDeployPUT(subjectDir, packageName)))){
             bw.write(content);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    private void deployOriginalCUTs(String packageName, String content) {
-        if (!Files.exists(Paths.get(getPathToDeployOriginalCUTs(packageName)))) {
+    /**
+     * Deploy data points as a test resource in the same package as PUT, which reads them as a class path resource
+     */
+    private void deployDataPoints(File subjectDir, String packageName, byte[] dataPoints) {
+        if (dataPoints == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(Paths.get(getPathToDeployDataPoints(subjectDir, packageName)).getParent());
+            Files.write(Paths.get(getPathToDeployDataPoints(subjectDir, packageName)), dataPoints);
+        } catch (IOException e) {
+            LOGGER.error("Fail to deploy data points: {}", e.getMessage());
+        }
+    }
+
+    private void _deploy(File dir, String filename, byte[] content) {
+        try {
+            Files.createDirectories(dir.toPath());
+            Files.write(new File(dir, filename).toPath(), content);
+        } catch (IOException e) {
+            LOGGER.error("Fail to deploy {}: {}", filename, e.getMessage());
+        }
+    }
+
+    private void _deploy(String path, String content) {
+        try (BufferedWriter bw = Files.newBufferedWriter(Paths.get(path))) {
+            bw.write(content);
+        } catch (IOException e) {
+            LOGGER.error("Fail to deploy {}: {}", path, e.getMessage());
+        }
+    }
+
+    private void deployOriginalCUTs(File subjectDir, String packageName, String content) {
+        if (!Files.exists(Paths.get(getPathToDeployOriginalCUTs(subjectDir, packageName)))) {
             try {
-                Files.createFile(Paths.get(getPathToDeployOriginalCUTs(packageName)));
+                Files.createFile(Paths.get(getPathToDeployOriginalCUTs(subjectDir, packageName)));
             } catch (IOException e) {
                 LOGGER.error("Fail to deploy original CUTs: {}", e.getMessage());
             }
         }
-        try (BufferedWriter bw = Files.newBufferedWriter(Paths.get(getPathToDeployOriginalCUTs(packageName)))){
+        try (BufferedWriter bw = Files.newBufferedWriter(Paths.get(getPathToDeployOriginalCUTs(subjectDir, packageName)))){
             bw.write(content);
         } catch (IOException e) {
             e.printStackTrace();
@@ -220,68 +674,53 @@ public class RequirementChecker {
     }
 
 
-    private String getPathToDeployPUT(String packageName) {
-        return String.join("/", _getPathToDeployDir(packageName), Main.PUT + ".java");
+    private String _getPathToDeployCandidate(File subjectDir, Candidate candidate) {
+        return String.join("/", _getPathToDeployDir(subjectDir, candidate.packageName), candidate.className + ".java");
+    }
+    private String getPathToDeployPUT(File subjectDir, String packageName) {
+        return String.join("/", _getPathToDeployDir(subjectDir, packageName), Main.PUT + ".java");
+    }
+    private String getPathToDeployOriginalCUTs(File subjectDir, String packageName) {
+        return String.join("/", _getPathToDeployDir(subjectDir, packageName), Main.CUT + ".java");
     }
-    private String getPathToDeployOriginalCUTs(String packageName) {
-        return String.join("/", _getPathToDeployDir(packageName), Main.CUT + ".java");
+    private String getPathToDeployDataPoints(File subjectDir, String packageName) {
+        return String.join("/", _getPathToDeployDir(subjectDir, packageName, "resources"), Main.PUT + Main.DATA_POINTS);
     }
 
-    private String _getPathToDeployDir(String packageName) {
-        String testPath = "src/test/java/";
+    private String _getPathToDeployDir(File subjectDir, String packageName) {
+        return _getPathToDeployDir(subjectDir, packageName, "java");
+    }
+
+    private String _getPathToDeployDir(File subjectDir, String packageName, String kind) {
+        String testPath = "src/test/" + kind + "/";
         if (project.getProjectId().equals("commons-chain")) {
-            testPath = "base/src/test/java/";
+            testPath = "base/src/test/" + kind + "/";
         } else if (project.getProjectId().equals("commons-digester")) {
-            testPath = "core/src/test/java/";
+            testPath = "core/src/test/" + kind + "/";
         }
-        return String.join("/", "subjects", project.getProjectId(), testPath, packageName.replace(".", "/"));
+        return String.join("/", subjectDir.getPath(), testPath, packageName.replace(".", "/"));
     }
 
-    private String _getPathToBaseDir(Project project) {
+    private String _getPathToBaseDir(File subjectDir) {
         if (project.getProjectId().equals("commons-digester")) {
-            return String.join("/", project.getProjectDir().getPath(), "core");
+            return String.join("/", subjectDir.getPath(), "core");
         } else if (project.getProjectId().equals("commons-chain")) {
-            return String.join("/", project.getProjectDir().getPath(), "base");
+            return String.join("/", subjectDir.getPath(), "base");
         } else {
-            return project.getProjectDir().getPath();
+            return subjectDir.getPath();
         }
     }
 
-    private void _copyCoverageReport(String packageName, String className, String testName, String mode) {
-        if (!Files.exists(Paths.get(_getPathToDirForCoverageReport(packageName, className, testName, mode)))) {
-            try {
-                Files.createDirectories(Paths.get(
-                        _getPathToDirForCoverageReport(packageName, className, testName, mode)));
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
+    private void _outputExecutionData(String packageName, String className, String testName, String mode, byte[] executionData) {
         try {
-            Files.copy(
-                    Paths.get(String.join("/", _getPathToBaseDir(project), "target", "site", "jacoco", "index.html")),
-                    Paths.get(String.join("/", _getPathToDirForCoverageReport(packageName, className, testName, mode), "index.html")),
-                    StandardCopyOption.REPLACE_EXISTING
-            );
+            Files.createDirectories(Paths.get(_getPathToDirForCoverageReport(packageName, className, testName, mode)));
+            Files.write(Paths.get(String.join("/", _getPathToDirForCoverageReport(packageName, className, testName, mode), "jacoco.exec")), executionData);
         } catch (IOException e) {
-            e.printStackTrace();
+            LOGGER.error("Fail to output execution data: {}", e.getMessage());
         }
     }
 
     private String _getPathToDirForCoverageReport(String packageName, String className, String testName, String mode) {
         return String.join("/", project.getOutputDir().getName(), project.getProjectId(), JACOCO_PATH, packageName, className, testName, mode);
     }
-
-    private String _getCoverageReport(String packageName, String className, String testName, String mode) {
-        String content = "";
-        try {
-            content = Files.lines(
-                    Paths.get(
-                            String.join("/", _getPathToDirForCoverageReport(packageName, className, testName, mode), "index.html")),
-                    Charset.forName("UTF-8")
-            ).collect(Collectors.joining(System.getProperty("line.separator")));
-        } catch (IOException e) {
-            // do nothing
-        }
-        return content;
-    }
 }
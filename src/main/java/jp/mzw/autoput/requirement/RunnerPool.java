@@ -0,0 +1,217 @@
+package jp.mzw.autoput.requirement;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long-lived JVMs running CoverageRunner with the JaCoCo agent, instead of mvn jacoco:prepare-agent test for each candidate.
+ * Dependencies of the subject are loaded once per runner, and each candidate is run in a fresh class loader.
+ * A runner is started for each working directory, i.e., the subject or a workspace, which is also given as basedir as surefire does.
+ * Unlike surefire, argLine, system properties and environment variables configured in pom.xml of the subject are ignored,
+ * and test classes are run by JUnitCore in the same JVM one after another, i.e., forkCount and reuseForks are not followed.
+ */
+public class RunnerPool implements Closeable {
+    protected static Logger LOGGER = LoggerFactory.getLogger(RunnerPool.class);
+
+    private static final String BIN_PATH = "bin";
+
+    protected List<String> command;
+    protected File runnerDir;
+    /** Runners keyed by their working directories */
+    protected Map<File, Runner> runners;
+    protected AtomicInteger ids;
+
+    private RunnerPool(List<String> command, File runnerDir) {
+        this.command = command;
+        this.runnerDir = runnerDir;
+        this.runners = new ConcurrentHashMap<>();
+        this.ids = new AtomicInteger();
+    }
+
+    /**
+     * @param agent runtime jar of the JaCoCo agent
+     * @param dependencies class path of dependency jars, which must have JUnit
+     * @param projectHome directory having pom.xml, where the first runner is started
+     * @param runnerDir directory for the runner class and logs of runners
+     * @return pool, or null if runners cannot be started
+     */
+    public static RunnerPool create(File agent, String[] dependencies, File projectHome, File runnerDir) {
+        if (agent == null || !agent.exists()) {
+            LOGGER.warn("JaCoCo agent is not found at {}, measure coverage by Maven instead", agent);
+            return null;
+        }
+        if (dependencies == null) {
+            LOGGER.warn("Class path is not resolved, measure coverage by Maven instead");
+            return null;
+        }
+        File bin = new File(runnerDir, BIN_PATH);
+        // Only the runner class is put on the class path, so that no class or resource of AutoPUT affects tests
+        try (InputStream is = CoverageRunner.class.getResourceAsStream(CoverageRunner.class.getSimpleName() + ".class")) {
+            File runnerClass = new File(bin, CoverageRunner.class.getName().replace(".", "/") + ".class");
+            Files.createDirectories(runnerClass.getParentFile().toPath());
+            Files.copy(is, runnerClass.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.error("Fail to prepare runner: {}", e.getMessage());
+            return null;
+        }
+        List<String> classpath = new ArrayList<>(Arrays.asList(dependencies));
+        classpath.add(bin.getAbsolutePath());
+        List<String> command = Arrays.asList(
+                String.join(File.separator, System.getProperty("java.home"), "bin", "java"),
+                "-javaagent:" + agent.getAbsolutePath() + "=output=none",
+                "-cp", String.join(File.pathSeparator, classpath),
+                CoverageRunner.class.getName());
+        RunnerPool pool = new RunnerPool(command, runnerDir);
+        // Start one in advance to measure coverage by Maven if runners cannot be started
+        File workingDir = projectHome.getAbsoluteFile();
+        try {
+            pool.runners.put(workingDir, pool.new Runner(workingDir));
+        } catch (IOException e) {
+            LOGGER.error("Fail to start runner: {}", e.getMessage());
+            return null;
+        }
+        return pool;
+    }
+
+    /**
+     * Run the given test class on the runner of the given working directory, which is started if not yet.
+     * This can be called from multiple threads, where tests in the same working directory are run one at a time.
+     *
+     * @param workingDir directory having pom.xml of the subject or a workspace
+     * @param className test class to run
+     * @param classpath directories having the test class and classes of the subject, in the order of lookup
+     * @return result, or null if the runner fails
+     */
+    public Result run(File workingDir, String className, List<File> classpath) {
+        Runner runner = runners.computeIfAbsent(workingDir.getAbsoluteFile(), dir -> {
+            try {
+                return new Runner(dir);
+            } catch (IOException e) {
+                throw new IllegalStateException("Fail to start runner at " + dir, e);
+            }
+        });
+        synchronized (runner) {
+            return runner.run(className, classpath);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Runner runner : runners.values()) {
+            synchronized (runner) {
+                runner.stop();
+            }
+        }
+        runners.clear();
+    }
+
+    /**
+     * Whether tests passed and execution data dumped after them
+     */
+    public static class Result {
+        private final boolean passed;
+        private final byte[] executionData;
+
+        private Result(boolean passed, byte[] executionData) {
+            this.passed = passed;
+            this.executionData = executionData;
+        }
+
+        public boolean isPassed() {
+            return this.passed;
+        }
+
+        public byte[] getExecutionData() {
+            return this.executionData;
+        }
+    }
+
+    /* ------------------------------------------------------------------ */
+
+    private class Runner {
+        private final int id;
+        private final File workingDir;
+        private Process process;
+        private BufferedWriter writer;
+        private BufferedReader reader;
+
+        private Runner(File workingDir) throws IOException {
+            this.id = ids.getAndIncrement();
+            this.workingDir = workingDir;
+            start();
+        }
+
+        private void start() throws IOException {
+            List<String> options = new ArrayList<>(command);
+            options.add(1, "-Dbasedir=" + workingDir.getPath());
+            ProcessBuilder builder = new ProcessBuilder(options);
+            builder.directory(workingDir);
+            builder.redirectError(ProcessBuilder.Redirect.appendTo(new File(runnerDir, "runner-" + id + ".log")));
+            process = builder.start();
+            writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+            reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        private Result run(String className, List<File> classpath) {
+            List<String> request = new ArrayList<>();
+            request.add(className);
+            for (File path : classpath) {
+                request.add(path.getAbsolutePath());
+            }
+            try {
+                writer.write(String.join("\t", request));
+                writer.newLine();
+                writer.flush();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] result = line.split("\t", -1);
+                    if (result.length == 3 && CoverageRunner.RESULT.equals(result[0])) {
+                        return new Result(Boolean.parseBoolean(result[1]), Base64.getDecoder().decode(result[2]));
+                    }
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                LOGGER.error("Fail to run {} on runner {}: {}", className, id, e.getMessage());
+            }
+            // e.g., System.exit in tests
+            LOGGER.warn("Runner {} is terminated while running {}, restart it", id, className);
+            stop();
+            try {
+                start();
+            } catch (IOException e) {
+                LOGGER.error("Fail to restart runner {}: {}", id, e.getMessage());
+            }
+            return null;
+        }
+
+        private void stop() {
+            try {
+                writer.close();
+                process.waitFor();
+            } catch (IOException e) {
+                process.destroy();
+            } catch (InterruptedException e) {
+                process.destroy();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package jp.mzw.autoput.requirement;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Copy of a subject where a worker deploys, compiles and measures PUTs without interfering with others.
+ * Files are hard-linked to the subject because they are only replaced by a new file, never rewritten in place,
+ * except build outputs in target directories, which are copied because Maven overwrites them.
+ */
+public class Workspace {
+    protected static Logger LOGGER = LoggerFactory.getLogger(Workspace.class);
+
+    private static final String BUILD_DIR = "target";
+
+    /**
+     * Clone the subject into the given directory, which is replaced if exists
+     */
+    public static void create(File subjectDir, File workspaceDir) throws IOException {
+        Path src = subjectDir.toPath();
+        Path dst = workspaceDir.toPath();
+        delete(dst);
+        Files.walkFileTree(src, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(dst.resolve(src.relativize(dir)));
+                return FileVisitResult.CONTINUE;
+            }
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path relative = src.relativize(file);
+                Path target = dst.resolve(relative);
+                if (attrs.isSymbolicLink() || isBuildOutput(relative)) {
+                    Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING, LinkOption.NOFOLLOW_LINKS);
+                    return FileVisitResult.CONTINUE;
+                }
+                try {
+                    Files.createLink(target, file);
+                } catch (IOException | UnsupportedOperationException e) {
+                    // e.g., across file systems
+                    Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        LOGGER.info("Create workspace {}", workspaceDir);
+    }
+
+    private static boolean isBuildOutput(Path relative) {
+        for (Path name : relative) {
+            if (name.toString().equals(BUILD_DIR)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Delete the given directory recursively if exists
+     */
+    static void delete(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}